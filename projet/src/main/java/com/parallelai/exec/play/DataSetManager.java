@@ -2,6 +2,9 @@ package com.parallelai.exec.play;
 
 import com.parallelai.database.FileDatabaseManager;
 import com.parallelai.export.implementations.ClassicThreadExporter;
+import com.parallelai.models.utils.CachedModel;
+import com.parallelai.models.utils.EvaluationCache;
+import com.parallelai.models.utils.InferenceBroker;
 import com.parallelai.models.utils.Model;
 import com.parallelai.players.AIPlayer;
 import com.parallelai.players.AIWeightedPlayer;
@@ -115,17 +118,7 @@ public class DataSetManager {
         System.out.println("\nInitialisation des modèles d'IA...");
         System.out.println("Cette étape peut prendre quelques instants pour les modèles CNN/MLP...");
 
-        if (aiType == AIType.REGULAR) {
-            AIPlayer p1 = new AIPlayer(Disc.BLACK, model1);
-            AIPlayer p2 = new AIPlayer(Disc.WHITE, model2);
-            System.out.println("Modèles initialisés. Début de la génération du jeu de données...\n");
-            exporter.startGamesWithUniqueStatesClassicThreads(nbParties, p1, p2, nbThreads, false);
-        } else {
-            AIWeightedPlayer p1 = new AIWeightedPlayer(Disc.BLACK, model1);
-            AIWeightedPlayer p2 = new AIWeightedPlayer(Disc.WHITE, model2);
-            System.out.println("Modèles initialisés. Début de la génération du jeu de données...\n");
-            exporter.startGamesWithUniqueStatesClassicThreads(nbParties, p1, p2, nbThreads, false);
-        }
+        playSharedGames(exporter, nbThreads, "Modèles initialisés. Début de la génération du jeu de données...\n");
         System.out.println("\nChargement du jeu de données dans la base...");
         FileDatabaseManager.insertFile(fullPath, 3);
 
@@ -171,17 +164,7 @@ public class DataSetManager {
             System.out.println("\nInitialisation des modèles d'IA...");
             System.out.println("Cette étape peut prendre quelques instants pour les modèles CNN/MLP...");
 
-            if (aiType == AIType.REGULAR) {
-                AIPlayer p1 = new AIPlayer(Disc.BLACK, model1);
-                AIPlayer p2 = new AIPlayer(Disc.WHITE, model2);
-                System.out.println("Modèles initialisés. Début de l'ajout des parties...\n");
-                exporter.startGamesWithUniqueStatesClassicThreads(nbParties, p1, p2, nbThreads, false);
-            } else {
-                AIWeightedPlayer p1 = new AIWeightedPlayer(Disc.BLACK, model1);
-                AIWeightedPlayer p2 = new AIWeightedPlayer(Disc.WHITE, model2);
-                System.out.println("Modèles initialisés. Début de l'ajout des parties...\n");
-                exporter.startGamesWithUniqueStatesClassicThreads(nbParties, p1, p2, nbThreads, false);
-            }
+            playSharedGames(exporter, nbThreads, "Modèles initialisés. Début de l'ajout des parties...\n");
 
             System.out.println("\nMise à jour du jeu de données dans la base...");
             FileDatabaseManager.deleteFile(selectedDataset, 3);
@@ -244,4 +227,53 @@ public class DataSetManager {
             System.out.println("Sélection invalide. Veuillez réessayer.");
         }
     }
+
+    /**
+     * Simule les parties avec les deux modèles. Les évaluations des parties
+     * parallèles sont mises en cache et regroupées en lots ; les brokers
+     * d'inférence créés pour ce partage sont fermés même si la simulation ou
+     * la création du second partage échoue.
+     *
+     * @param exporter  L'exporteur qui joue et enregistre les parties
+     * @param nbThreads Le nombre de threads de jeu
+     * @param message   Le message affiché une fois les modèles initialisés
+     */
+    private void playSharedGames(ClassicThreadExporter exporter, int nbThreads, String message) {
+        EvaluationCache cache = new EvaluationCache();
+        int clients = InferenceBroker.clientsPerPlayer(nbThreads);
+        Model shared1 = model1;
+        Model shared2 = model2;
+        try {
+            shared1 = CachedModel.share(model1, clients, cache);
+            shared2 = CachedModel.share(model2, clients, cache);
+            if (aiType == AIType.REGULAR) {
+                AIPlayer p1 = new AIPlayer(Disc.BLACK, shared1);
+                AIPlayer p2 = new AIPlayer(Disc.WHITE, shared2);
+                System.out.println(message);
+                exporter.startGamesWithUniqueStatesClassicThreads(nbParties, p1, p2, nbThreads, false);
+            } else {
+                AIWeightedPlayer p1 = new AIWeightedPlayer(Disc.BLACK, shared1);
+                AIWeightedPlayer p2 = new AIWeightedPlayer(Disc.WHITE, shared2);
+                System.out.println(message);
+                exporter.startGamesWithUniqueStatesClassicThreads(nbParties, p1, p2, nbThreads, false);
+            }
+        } finally {
+            closeShared(shared1, model1);
+            closeShared(shared2, model2);
+        }
+        cache.printStats();
+    }
+
+    /**
+     * Ferme le cache et le broker d'inférence créés pour partager un modèle,
+     * s'il y en a.
+     *
+     * @param shared Le modèle partagé
+     * @param model  Le modèle d'origine
+     */
+    private static void closeShared(Model shared, Model model) {
+        if (shared != model) {
+            shared.close();
+        }
+    }
 }
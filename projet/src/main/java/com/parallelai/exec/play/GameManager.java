@@ -218,46 +218,65 @@ public class GameManager {
         ExecutorService executor = Executors.newFixedThreadPool(processors);
         List<Future<GameResult>> futures = new ArrayList<>();
 
-        System.out.println("Progression : ");
-
-        // Soumettre toutes les parties à l'exécuteur
-        for (int i = 0; i < numGames; i++) {
-            GameRunner runner = new GameRunner(model1, model2, aiType, () -> {
-                gamesCompleted.incrementAndGet();
-                updateProgressBar();
-            });
-            futures.add(executor.submit(runner));
-        }
+        // Les évaluations des parties parallèles sont mises en cache et regroupées en lots
+        EvaluationCache cache = new EvaluationCache();
+        int clients = InferenceBroker.clientsPerPlayer(processors);
+        Model shared1 = CachedModel.share(model1, clients, cache);
+        Model shared2 = model2;
+        try {
+            shared2 = CachedModel.share(model2, clients, cache);
 
-        // Collecter les résultats
-        for (Future<GameResult> future : futures) {
-            try {
-                GameResult result = future.get();
-                switch (result) {
-                    case BLACK_WINS -> atomicModel1Wins.incrementAndGet();
-                    case WHITE_WINS -> atomicModel2Wins.incrementAndGet();
-                    case TIE -> atomicTies.incrementAndGet();
+            System.out.println("Progression : ");
+
+            // Soumettre toutes les parties à l'exécuteur
+            for (int i = 0; i < numGames; i++) {
+                GameRunner runner = new GameRunner(shared1, shared2, aiType, () -> {
+                    gamesCompleted.incrementAndGet();
+                    updateProgressBar();
+                });
+                futures.add(executor.submit(runner));
+            }
+
+            // Collecter les résultats
+            for (Future<GameResult> future : futures) {
+                try {
+                    GameResult result = future.get();
+                    switch (result) {
+                        case BLACK_WINS -> atomicModel1Wins.incrementAndGet();
+                        case WHITE_WINS -> atomicModel2Wins.incrementAndGet();
+                        case TIE -> atomicTies.incrementAndGet();
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
                 }
-            } catch (InterruptedException | ExecutionException e) {
-                e.printStackTrace();
             }
-        }
 
-        // Après la collecte des résultats et avant executor.shutdown()
-        System.out.print("\r[");
-        for (int j = 0; j < 50; j++) {
-            System.out.print("=");
-        }
-        System.out.print("] 100% (" + numGames + "/" + numGames + ")");
-        
-        executor.shutdown();
-        try {
-            executor.awaitTermination(1, TimeUnit.HOURS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            // Après la collecte des résultats et avant executor.shutdown()
+            System.out.print("\r[");
+            for (int j = 0; j < 50; j++) {
+                System.out.print("=");
+            }
+            System.out.print("] 100% (" + numGames + "/" + numGames + ")");
+
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.HOURS);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        } finally {
+            // Les brokers ne sont fermés qu'une fois les parties arrêtées
+            executor.shutdownNow();
+            if (shared1 != model1) {
+                shared1.close();
+            }
+            if (shared2 != model2) {
+                shared2.close();
+            }
         }
 
         System.out.println(); // Nouvelle ligne après la barre de progression
+        cache.printStats();
 
         // Mise à jour des variables de statistiques originales pour la compatibilité
         model1Wins = atomicModel1Wins.get();
@@ -2,6 +2,9 @@ package com.parallelai.exec.train;
 
 import com.parallelai.training.CnnTraining;
 import com.parallelai.training.DenseTraining;
+import com.parallelai.training.LearningRateSchedule;
+import com.parallelai.training.TrainingCheckpoint;
+import com.parallelai.training.TrainingOptions;
 import com.parallelai.database.FileDatabaseManager;
 
 import org.nd4j.evaluation.regression.RegressionEvaluation;
@@ -23,6 +26,21 @@ public class TrainerManager {
     // Chemin vers le répertoire contenant les jeux de données
     private static final String DATASET_DIR = "projet\\src\\main\\ressources\\data";
 
+    // Chemin vers le répertoire des checkpoints de reprise
+    private static final String CHECKPOINT_DIR = "projet\\src\\main\\ressources\\checkpoints";
+
+    // Nombre de batchs par worker entre deux moyennes des paramètres
+    private static final int DEFAULT_AVERAGING_FREQUENCY = 5;
+
+    // Amélioration minimale de la MSE de validation pour l'arrêt anticipé
+    private static final double DEFAULT_MIN_DELTA = 1e-4;
+
+    // Facteur de réduction du taux d'apprentissage (paliers et plateau)
+    private static final double DEFAULT_LR_FACTOR = 0.5;
+
+    // Taux d'apprentissage minimal (cosinus et plateau)
+    private static final double DEFAULT_MIN_LR = 1e-5;
+
     /**
      * Permet à l'utilisateur de sélectionner un jeu de données depuis la base de
      * données.
@@ -104,6 +122,105 @@ public class TrainerManager {
         return epochs;
     }
 
+    /**
+     * Demande à l'utilisateur le nombre de workers pour l'entraînement
+     * parallèle.
+     * 
+     * @param scanner Scanner pour la saisie utilisateur
+     * @return Le nombre de workers choisi (1 : entraînement simple)
+     * @throws IllegalArgumentException Si la valeur saisie est négative
+     */
+    private int getWorkers(Scanner scanner) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.println("\nChoisissez le nombre de workers (1 = entraînement simple, max conseillé : "
+                + processors + ") :");
+        int workers = scanner.nextInt();
+        if (workers < 1) {
+            throw new IllegalArgumentException("Le nombre de workers doit être positif");
+        }
+        return workers;
+    }
+
+    /**
+     * Demande à l'utilisateur la patience de l'arrêt anticipé.
+     * 
+     * @param scanner Scanner pour la saisie utilisateur
+     * @return Le nombre d'epochs sans amélioration avant l'arrêt (0 :
+     *         désactivé)
+     * @throws IllegalArgumentException Si la valeur saisie est négative
+     */
+    private int getPatience(Scanner scanner) {
+        System.out.println("\nArrêt anticipé après combien d'epochs sans amélioration ? (0 = désactivé) :");
+        int patience = scanner.nextInt();
+        if (patience < 0) {
+            throw new IllegalArgumentException("La patience ne peut pas être négative");
+        }
+        return patience;
+    }
+
+    /**
+     * Demande à l'utilisateur l'évolution du taux d'apprentissage.
+     * 
+     * @param scanner Scanner pour la saisie utilisateur
+     * @param epochs  Le nombre d'epochs de l'entraînement
+     * @return L'évolution choisie
+     * @throws IllegalArgumentException Si le choix est invalide
+     */
+    private LearningRateSchedule getLearningRateSchedule(Scanner scanner, int epochs) {
+        System.out.println("\nChoisissez l'évolution du taux d'apprentissage :");
+        System.out.println("1. Constant");
+        System.out.println("2. Par paliers (divisé par 2 tous les 10% des epochs)");
+        System.out.println("3. Cosinus");
+        System.out.println("4. Réduction sur plateau de la MSE de validation");
+        switch (scanner.nextInt()) {
+            case 1:
+                return LearningRateSchedule.constant();
+            case 2:
+                return LearningRateSchedule.step(DEFAULT_LR_FACTOR, Math.max(1, epochs / 10));
+            case 3:
+                return LearningRateSchedule.cosine(epochs, DEFAULT_MIN_LR);
+            case 4:
+                return LearningRateSchedule.plateau(DEFAULT_LR_FACTOR, 3, DEFAULT_MIN_DELTA, DEFAULT_MIN_LR);
+            default:
+                throw new IllegalArgumentException("Choix invalide");
+        }
+    }
+
+    /**
+     * Propose de reprendre l'entraînement interrompu d'un modèle de même
+     * nom, s'il en existe un pour le même type de réseau et le même
+     * dataset.
+     * 
+     * @param scanner     Scanner pour la saisie utilisateur
+     * @param modelName   Nom du modèle à entraîner
+     * @param modelType   Type du réseau à entraîner (CNN ou MLP)
+     * @param datasetPath Chemin du dataset d'entraînement
+     * @param options     Options d'entraînement, complétées en cas de reprise
+     */
+    private void offerResume(Scanner scanner, String modelName, String modelType, String datasetPath,
+            TrainingOptions options) {
+        TrainingCheckpoint checkpoint;
+        try {
+            checkpoint = TrainingCheckpoint.load(CHECKPOINT_DIR, modelName);
+        } catch (IOException e) {
+            System.err.println("Checkpoint illisible, nouvel entraînement : " + e.getMessage());
+            return;
+        }
+        if (checkpoint == null) {
+            return;
+        }
+        if (!checkpoint.matches(modelType, new File(datasetPath))) {
+            System.out.println("\nLe checkpoint de " + modelName + " concerne un autre entraînement ("
+                    + checkpoint.describeTraining() + ") : nouvel entraînement.");
+            return;
+        }
+        System.out.println("\nUn entraînement interrompu de " + modelName + " a été trouvé (" + checkpoint.getEpoch()
+                + " epochs terminées). Le reprendre ? (o/n) :");
+        if (scanner.next().trim().equalsIgnoreCase("o")) {
+            options.setResumeFrom(checkpoint);
+        }
+    }
+
     /**
      * Sauvegarde le modèle entraîné avec ses métriques de performance.
      * Le nom du fichier inclut les métriques principales (MSE, RMSE, R²).
@@ -167,18 +284,34 @@ public class TrainerManager {
         int batchSize = getBatchSize(scanner);
         int epochs = getEpochs(scanner);
 
+        TrainingOptions options = new TrainingOptions();
+        options.setDataParallel(getWorkers(scanner), DEFAULT_AVERAGING_FREQUENCY);
+        options.setEarlyStopping(getPatience(scanner), DEFAULT_MIN_DELTA);
+        options.setLearningRateSchedule(getLearningRateSchedule(scanner, epochs));
+        options.setCheckpoints(CHECKPOINT_DIR, 1);
+        if (choice == 1 || choice == 2) {
+            offerResume(scanner, modelName, choice == 1 ? DenseTraining.MODEL_TYPE : CnnTraining.MODEL_TYPE,
+                    datasetPath, options);
+        }
+
         try {
             TrainerResult result;
             switch (choice) {
                 case 1:
                     System.out.println("Entraînement du réseau de neurones dense...");
-                    result = new DenseTraining().train(datasetPath, modelName, batchSize, epochs);
+                    DenseTraining dense = new DenseTraining();
+                    dense.setOptions(options);
+                    result = dense.train(datasetPath, modelName, batchSize, epochs);
                     saveModelWithMetrics(modelName, "MLP", result);
+                    TrainingCheckpoint.delete(CHECKPOINT_DIR, modelName);
                     break;
                 case 2:
                     System.out.println("Entraînement du CNN...");
-                    result = new CnnTraining().train(datasetPath, modelName, batchSize, epochs);
+                    CnnTraining cnn = new CnnTraining();
+                    cnn.setOptions(options);
+                    result = cnn.train(datasetPath, modelName, batchSize, epochs);
                     saveModelWithMetrics(modelName, "CNN", result);
+                    TrainingCheckpoint.delete(CHECKPOINT_DIR, modelName);
                     break;
                 default:
                     System.out.println("Choix invalide. Veuillez sélectionner 1 ou 2.");
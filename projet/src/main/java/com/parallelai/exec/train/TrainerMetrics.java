@@ -3,6 +3,7 @@ package com.parallelai.exec.train;
 import org.deeplearning4j.nn.api.Model;
 import org.deeplearning4j.optimize.api.BaseTrainingListener;
 import java.text.DecimalFormat;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Classe de suivi des métriques pendant l'entraînement d'un modèle.
@@ -11,6 +12,9 @@ import java.text.DecimalFormat;
  * - La progression de l'entraînement (pourcentage et epochs)
  * - Loss actuelle et meilleure loss
  * - Le temps d'exécution par epoch
+ * - Le débit (exemples par seconde) et, en entraînement parallèle,
+ *   l'efficacité du passage à l'échelle
+ * - Le taux d'apprentissage courant et l'éventuel arrêt anticipé
  */
 public class TrainerMetrics extends BaseTrainingListener {
     // Variables de suivi de l'entraînement
@@ -19,6 +23,13 @@ public class TrainerMetrics extends BaseTrainingListener {
     private final DecimalFormat df;
     private long startTime;
     private double bestLoss = Double.MAX_VALUE;
+    private double lastLoss = Double.NaN;
+    private double learningRate = Double.NaN;
+
+    // Variables de suivi du débit
+    private final LongAdder epochExamples = new LongAdder();
+    private int workers = 1;
+    private double baselineThroughput = 0;
 
     /**
      * Initialise un tracker de métriques d'entraînement.
@@ -26,8 +37,18 @@ public class TrainerMetrics extends BaseTrainingListener {
      * @param totalEpochs Le nombre total d'epochs prévues pour l'entraînement
      */
     public TrainerMetrics(int totalEpochs) {
+        this(totalEpochs, 0);
+    }
+
+    /**
+     * Initialise un tracker de métriques pour un entraînement repris.
+     *
+     * @param totalEpochs     Le nombre total d'epochs prévues pour l'entraînement
+     * @param completedEpochs Le nombre d'epochs déjà terminées
+     */
+    public TrainerMetrics(int totalEpochs, int completedEpochs) {
         this.totalEpochs = totalEpochs;
-        this.currentEpoch = 0;
+        this.currentEpoch = completedEpochs;
         this.df = new DecimalFormat("#.####");
     }
 
@@ -41,6 +62,51 @@ public class TrainerMetrics extends BaseTrainingListener {
     public void onEpochStart(Model model) {
         currentEpoch++;
         startTime = System.currentTimeMillis();
+        epochExamples.reset();
+    }
+
+    /**
+     * Comptabilise des exemples d'entraînement traités pendant l'epoch en
+     * cours. Peut être appelée depuis plusieurs threads.
+     *
+     * @param count Le nombre d'exemples
+     */
+    public void addExamples(long count) {
+        epochExamples.add(count);
+    }
+
+    /**
+     * Déclare un entraînement parallèle, pour afficher l'efficacité du
+     * passage à l'échelle : débit mesuré / (workers x débit d'un worker).
+     *
+     * @param workers            Le nombre de workers
+     * @param baselineThroughput Le débit mesuré sur un seul worker, en
+     *                           exemples par seconde
+     */
+    public void setParallelism(int workers, double baselineThroughput) {
+        this.workers = workers;
+        this.baselineThroughput = baselineThroughput;
+    }
+
+    /**
+     * Déclare le taux d'apprentissage utilisé à partir de la prochaine epoch.
+     *
+     * @param learningRate Le taux d'apprentissage
+     */
+    public void setLearningRate(double learningRate) {
+        this.learningRate = learningRate;
+    }
+
+    /**
+     * Signale l'arrêt de l'entraînement avant le nombre d'epochs prévu,
+     * faute d'amélioration de la MSE de validation.
+     *
+     * @param epochsWithoutImprovement Le nombre d'epochs sans amélioration
+     */
+    public void onEarlyStop(int epochsWithoutImprovement) {
+        System.out.println(String.format("\nArrêt anticipé à l'epoch %d/%d : pas d'amélioration depuis %d epochs",
+                currentEpoch, totalEpochs, epochsWithoutImprovement));
+        printSummary();
     }
 
     /**
@@ -53,6 +119,7 @@ public class TrainerMetrics extends BaseTrainingListener {
     public void onEpochEnd(Model model) {
         double loss = model.score();
         bestLoss = Math.min(bestLoss, loss);
+        lastLoss = loss;
         long duration = System.currentTimeMillis() - startTime;
 
         updateProgressBar(loss, duration);
@@ -80,13 +147,34 @@ public class TrainerMetrics extends BaseTrainingListener {
                 percentage, currentEpoch, totalEpochs,
                 df.format(loss), df.format(bestLoss),
                 duration / 1000.0);
+        if (!Double.isNaN(learningRate)) {
+            metrics += String.format("| LR: %.2e ", learningRate);
+        }
+
+        // Débit de l'epoch et efficacité par rapport à un seul worker
+        double throughput = duration > 0 ? epochExamples.sum() * 1000.0 / duration : 0;
+        if (throughput > 0) {
+            metrics += String.format("| %.0f ex/s ", throughput);
+            if (workers > 1 && baselineThroughput > 0) {
+                metrics += String.format("| Efficacité: %.0f%% (%d workers) ",
+                        100 * throughput / (workers * baselineThroughput), workers);
+            }
+        }
 
         System.out.print(progressBar.toString() + metrics);
 
         if (currentEpoch == totalEpochs) {
-            System.out.println("\nEntrainement terminé !");
-            System.out.println("Final Loss: " + df.format(loss));
-            System.out.println("Best Loss: " + df.format(bestLoss));
+            System.out.println();
+            printSummary();
         }
     }
+
+    /**
+     * Affiche le résumé de fin d'entraînement.
+     */
+    private void printSummary() {
+        System.out.println("Entrainement terminé !");
+        System.out.println("Final Loss: " + df.format(lastLoss));
+        System.out.println("Best Loss: " + df.format(bestLoss));
+    }
 }
@@ -2,14 +2,17 @@ package com.parallelai.export;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.Base64;
 import java.util.LinkedHashMap;
 import java.io.BufferedReader;
@@ -20,9 +23,16 @@ import java.util.Arrays;
 import com.parallelai.exec.play.GameManager;
 import com.parallelai.export.implementations.ClassicThreadExporter;
 import com.parallelai.export.implementations.ParallelExporter;
+import com.parallelai.export.utilities.BinaryStateReader;
+import com.parallelai.export.utilities.BinaryStateWriter;
+import com.parallelai.export.utilities.CsvStateWriter;
 import com.parallelai.export.utilities.GameExporterUtils.CompressedState;
 import com.parallelai.export.utilities.GameExporterUtils.ProgressBar;
 import com.parallelai.export.utilities.GameExporterUtils.StateBuffer;
+import com.parallelai.export.utilities.OffHeapStateMap;
+import com.parallelai.export.utilities.StateMap;
+import com.parallelai.export.utilities.StateStore;
+import com.parallelai.export.utilities.StateWriter;
 import com.parallelai.game.Board;
 import com.parallelai.game.Disc;
 import com.parallelai.models.RandomModel;
@@ -45,6 +55,24 @@ public abstract class GameStateExporter {
     /** Chemin du fichier CSV de sortie */
     private final String outputPath;
 
+    /**
+     * Si vrai, les états sont dédupliqués sous leur forme canonique : une
+     * position et ses rotations/réflexions ne forment qu'une seule ligne.
+     */
+    private boolean canonicalStates = false;
+
+    /**
+     * Budget mémoire hors tas de l'ensemble des tables d'états, en octets.
+     * 0 pour utiliser des tables sur le tas.
+     */
+    private long offHeapBytes = 0;
+
+    /** Octets hors tas occupés par les tables d'états de l'exportateur */
+    private final AtomicLong offHeapAllocated = new AtomicLong();
+
+    /** Si vrai, les tables d'états sont exportées au format binaire compact */
+    private boolean binaryOutput = false;
+
     /**
      * Crée un nouveau gestionnaire d'export.
      * 
@@ -54,6 +82,79 @@ public abstract class GameStateExporter {
         this.outputPath = outputPath;
     }
 
+    /**
+     * Active ou désactive la déduplication des états par symétrie.
+     * Les 8 images d'une position (rotations et réflexions) ont la même valeur
+     * de jeu ; en mode canonique elles sont agrégées sur une seule ligne, ce
+     * qui réduit jusqu'à 8 fois la taille du dataset. Les symétries peuvent
+     * être ré-générées à l'entraînement via DatasetImporter.
+     *
+     * @param canonicalStates true pour agréger les positions symétriques
+     */
+    public void setCanonicalStates(boolean canonicalStates) {
+        this.canonicalStates = canonicalStates;
+    }
+
+    /**
+     * Crée un buffer de compression selon le mode de déduplication de
+     * l'exportateur.
+     *
+     * @return Un nouveau StateBuffer (un par thread)
+     */
+    protected StateBuffer newStateBuffer() {
+        return new StateBuffer(canonicalStates);
+    }
+
+    /**
+     * Stocke les tables d'états hors du tas Java, dans la limite d'un budget
+     * mémoire commun à toutes les tables de l'exportateur (une par thread ou
+     * par shard, plus la table fusionnée). Destiné aux exports de plusieurs
+     * millions de positions, pour lesquels les tables sur le tas saturent la
+     * mémoire et allongent les pauses du ramasse-miettes.
+     *
+     * @param maxBytes Budget total des tables en octets (0 pour revenir aux
+     *                 tables sur le tas)
+     */
+    public void setOffHeapStateStore(long maxBytes) {
+        this.offHeapBytes = maxBytes;
+    }
+
+    /**
+     * Exporte les tables d'états au format binaire de
+     * {@link BinaryStateWriter} plutôt qu'en CSV : une ligne occupe 32 octets
+     * au lieu d'environ 300, et se relit sans analyse de texte.
+     * DatasetImporter reconnaît les deux formats.
+     *
+     * @param binaryOutput true pour écrire au format binaire
+     */
+    public void setBinaryOutput(boolean binaryOutput) {
+        this.binaryOutput = binaryOutput;
+    }
+
+    /**
+     * Crée une table d'agrégation des états selon la configuration de
+     * l'exportateur.
+     *
+     * @return Une nouvelle table vide
+     */
+    protected StateStore newStateStore() {
+        return newStateStore(0);
+    }
+
+    /**
+     * Crée une table d'agrégation des états dimensionnée pour le nombre
+     * d'états attendu.
+     *
+     * @param expectedSize Nombre d'états uniques attendus (ignoré hors tas)
+     * @return Une nouvelle table vide
+     */
+    protected StateStore newStateStore(int expectedSize) {
+        if (offHeapBytes > 0) {
+            return new OffHeapStateMap(offHeapBytes, offHeapAllocated);
+        }
+        return new StateMap(expectedSize);
+    }
+
     /**
      * Exporte l'état actuel du plateau dans le fichier CSV.
      * Convertit chaque case en valeur numérique:
@@ -266,16 +367,18 @@ public abstract class GameStateExporter {
     public void startGamesWithUniqueStates(int nbParties, Model model1, Model model2) {
         System.out.println("Début des " + nbParties + " parties avec situations uniques...");
 
-        List<double[]> uniqueStates = new ArrayList<>();
+        // Situations uniques indexées par leur plateau
+        StateStore uniqueStates = newStateStore();
+        StateBuffer stateBuffer = newStateBuffer();
 
         for (int i = 0; i < nbParties; i++) {
             Board board = new Board();
             GameManager game = new GameManager(board, model1, model2);
-            List<Board> gameHistory = new ArrayList<>();
+            List<CompressedState> gameHistory = new ArrayList<>();
 
             // Jouer et collecter l'historique
             while (game.playNextMove()) {
-                gameHistory.add(board.copy());
+                gameHistory.add(stateBuffer.compressState(board));
             }
 
             // Calculer le résultat final (1 pour victoire, 0.5 pour nul, 0 pour défaite)
@@ -289,26 +392,8 @@ public abstract class GameStateExporter {
                 finalResult = 0.0; // Défaite
 
             // Traiter chaque état du jeu
-            for (Board state : gameHistory) {
-                double[] currentState = boardToArray(state);
-                boolean found = false;
-
-                // Chercher si la situation existe déjà
-                for (double[] existingState : uniqueStates) {
-                    if (isSameState(currentState, existingState)) {
-                        existingState[64] += finalResult; // Somme des résultats (1/0.5/0)
-                        existingState[65] += 1.0; // Nombre d'occurrences
-                        found = true;
-                        break;
-                    }
-                }
-
-                // Si c'est une nouvelle situation, l'ajouter
-                if (!found) {
-                    currentState[64] = finalResult; // Premier résultat (1/0.5/0)
-                    currentState[65] = 1.0; // Première occurrence
-                    uniqueStates.add(currentState);
-                }
+            for (CompressedState state : gameHistory) {
+                uniqueStates.add(state.black(), state.white(), finalResult);
             }
 
             if ((i + 1) % 10 == 0) {
@@ -318,110 +403,115 @@ public abstract class GameStateExporter {
 
         exportUniqueStatesArray(uniqueStates);
         System.out.println("Terminé! " + uniqueStates.size() + " situations uniques sauvegardées.");
+        uniqueStates.release();
     }
 
-    private double[] boardToArray(Board board) {
-        double[] state = new double[67]; // 64 cases + moyenne + somme + occurrences
-        Disc[][] grid = board.getGrid();
-
-        int index = 0;
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                state[index++] = grid[row][col] == Disc.BLACK ? 1 : grid[row][col] == Disc.WHITE ? -1 : 0;
-            }
-        }
-
-        return state;
-    }
-
-    private boolean isSameState(double[] state1, double[] state2) {
-        // Comparer uniquement les 64 premières valeurs (état du plateau)
-        for (int i = 0; i < 64; i++) {
-            if (state1[i] != state2[i])
-                return false;
+    private void exportUniqueStatesArray(StateStore uniqueStates) {
+        try (StateWriter writer = openStateWriter()) {
+            // État du plateau (64 valeurs) et moyenne des résultats
+            uniqueStates.forEach((black, white, sum, count) -> {
+                try {
+                    writer.writeLabelRow(black, white, sum, count);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Erreur lors de l'écriture du fichier de sortie: " + e.getMessage());
         }
-        return true;
     }
 
-    private void exportUniqueStatesArray(List<double[]> uniqueStates) {
-        try (FileWriter writer = new FileWriter(outputPath)) {
-            for (double[] state : uniqueStates) {
-                StringBuilder line = new StringBuilder();
-
-                // Écrire l'état du plateau (64 valeurs)
-                for (int i = 0; i < 64; i++) {
-                    line.append(state[i]).append(",");
+    /**
+     * Exporte une table d'états, une ligne par état : état du plateau (0-63),
+     * moyenne (64), somme totale (65) et nombre d'occurrences (66).
+     * L'écriture se fait en flux, au format CSV ou binaire selon la
+     * configuration de l'exportateur.
+     *
+     * @param stateMap La table des états à exporter
+     */
+    protected void exportStateMap(StateStore stateMap) {
+        try (StateWriter writer = openStateWriter()) {
+            stateMap.forEach((black, white, sum, count) -> {
+                try {
+                    writer.writeRow(black, white, sum, count);
+                } catch (IOException e) {
+                    // Les exceptions vérifiées ne traversent pas le parcours de la table
+                    throw new UncheckedIOException(e);
                 }
-
-                // Calculer et écrire la moyenne des résultats
-                double average = state[64] / state[65];
-                line.append(average).append("\n");
-
-                writer.write(line.toString());
-            }
-        } catch (IOException e) {
-            System.err.println("Erreur lors de l'écriture du fichier CSV: " + e.getMessage());
+            });
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Erreur lors de l'écriture du fichier de sortie: " + e.getMessage());
         }
     }
 
-    protected void exportStateMap(Map<String, double[]> stateMap) {
-        try (FileWriter writer = new FileWriter(outputPath)) {
-            for (double[] state : stateMap.values()) {
-                StringBuilder line = new StringBuilder();
-
-                // État du plateau (0-63)
-                for (int i = 0; i < 64; i++) {
-                    line.append(state[i]).append(",");
-                }
-
-                // Moyenne (64)
-                line.append(state[65] / state[66]).append(",");
-                // Somme totale (65)
-                line.append(state[65]).append(",");
-                // Nombre d'occurrences (66)
-                line.append(state[66]).append("\n");
-
-                writer.write(line.toString());
-            }
-        } catch (IOException e) {
-            System.err.println("Erreur lors de l'écriture du fichier CSV: " + e.getMessage());
-        }
+    /**
+     * Ouvre le fichier de sortie dans le format configuré.
+     */
+    private StateWriter openStateWriter() throws IOException {
+        return binaryOutput ? new BinaryStateWriter(outputPath) : new CsvStateWriter(outputPath);
     }
 
-    protected Map<String, double[]> loadExistingCSV() {
-        Map<String, double[]> existingData = new HashMap<>();
+    /**
+     * Charge le fichier de sortie existant (CSV ou binaire, détecté d'après
+     * son contenu) dans une table d'états, pour y ajouter de nouvelles parties.
+     *
+     * @return La table des états existants (vide si le fichier n'existe pas)
+     */
+    protected StateStore loadExistingCSV() {
+        StateStore existingData = newStateStore();
         File file = new File(outputPath);
 
         if (!file.exists()) {
             return existingData;
         }
 
+        if (BinaryStateReader.isBinary(outputPath)) {
+            try {
+                BinaryStateReader.read(outputPath, (black, white, label, sum, count) -> {
+                    // En mode canonique, ramener la ligne à la forme canonique
+                    if (canonicalStates) {
+                        int symmetry = Board.canonicalSymmetry(black, white);
+                        black = Board.transform(black, symmetry);
+                        white = Board.transform(white, symmetry);
+                    }
+                    existingData.add(black, white, sum, count);
+                });
+            } catch (IOException e) {
+                System.err.println("Erreur lors de la lecture du fichier binaire: " + e.getMessage());
+            }
+            return existingData;
+        }
+
         try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
             String line;
             while ((line = reader.readLine()) != null) {
                 String[] parts = line.split(",");
                 if (parts.length >= 67) {
-                    // Créer la clé à partir des 64 premières colonnes
-                    StringBuilder keyBuilder = new StringBuilder();
+                    // Reconstruire les bitboards de l'état du plateau (0-63)
+                    long black = 0;
+                    long white = 0;
                     for (int i = 0; i < 64; i++) {
-                        keyBuilder.append(parts[i]).append(",");
+                        double value = Double.parseDouble(parts[i]);
+                        if (value > 0) {
+                            black |= 1L << i;
+                        } else if (value < 0) {
+                            white |= 1L << i;
+                        }
                     }
-                    String key = keyBuilder.toString();
 
-                    double[] values = new double[67];
-                    // Copier l'état du plateau (0-63)
-                    for (int i = 0; i < 64; i++) {
-                        values[i] = Double.parseDouble(parts[i]);
+                    // En mode canonique, ramener la ligne à la forme canonique
+                    if (canonicalStates) {
+                        int symmetry = Board.canonicalSymmetry(black, white);
+                        black = Board.transform(black, symmetry);
+                        white = Board.transform(white, symmetry);
                     }
 
-                    // La moyenne (64)
-                    values[64] = Double.parseDouble(parts[64]);
-                    // Somme totale (65)
-                    values[65] = Double.parseDouble(parts[65]);
-                    // Nombre d'occurrences (66)
-                    values[66] = Double.parseDouble(parts[66]);
-
-                    existingData.put(key, values);
+                    // La moyenne (64) est recalculée à l'export.
+                    // Un fichier écrit sans déduplication peut contenir plusieurs
+                    // images d'une même position : la table les agrège.
+                    double sum = Double.parseDouble(parts[65]); // Somme totale (65)
+                    int count = (int) Double.parseDouble(parts[66]); // Nombre d'occurrences (66)
+                    existingData.add(black, white, sum, count);
                 }
             }
         } catch (IOException e) {
@@ -431,45 +521,77 @@ public abstract class GameStateExporter {
     }
 
     /**
-     * Fusionne les résultats de plusieurs threads dans une map finale.
-     * Utilise une approche de fusion en flux pour optimiser la mémoire.
+     * Fusionne les résultats de plusieurs threads en une seule table.
+     * La fusion est une réduction en arbre sur le pool fork/join : les tables
+     * sont fusionnées deux à deux en parallèle, ce qui ramène la durée de la
+     * fusion de T fusions successives à log2(T) niveaux. Les sommes et
+     * occurrences s'ajoutent ; la moyenne est calculée à l'export.
+     *
+     * Les tables d'entrée sont réutilisées : la plus grande de chaque paire
+     * reçoit la plus petite, et la liste est vidée pour libérer la mémoire.
      * 
-     * @param threadResults Liste des maps contenant les résultats de chaque thread
-     * @param finalMap      Map finale où stocker les résultats fusionnés
+     * @param threadResults Liste des tables contenant les résultats de chaque thread
+     * @return La table contenant tous les résultats fusionnés
      */
-    public void streamMerge(List<Map<String, double[]>> threadResults, final Map<String, double[]> finalMap) {
-
-        // Parcourir les résultats thread par thread
-        for (int i = 0; i < threadResults.size(); i++) {
-            Map<String, double[]> currentResult = threadResults.get(i);
-
-            // Pour le premier thread, copier directement les résultats
-            if (i == 0) {
-                currentResult.forEach((key, value) -> finalMap.put(key, value));
-            } else {
-                // Pour les autres threads, fusionner sans créer de nouveaux objets
-                currentResult.forEach((key, value) -> {
-                    double[] existing = finalMap.get(key);
-                    if (existing != null) {
-                        existing[65] += value[65]; // Somme totale
-                        existing[66] += value[66]; // Nombre d'occurrences
-                        // existing[64] sera recalculé à l'export
-                    } else {
-                        finalMap.put(key, value);
-                    }
-                });
+    public StateStore streamMerge(List<StateStore> threadResults) {
+        List<StateStore> results = new ArrayList<>(threadResults.size());
+        for (StateStore result : threadResults) {
+            if (result != null) {
+                results.add(result);
             }
+        }
+        threadResults.clear();
+
+        if (results.isEmpty()) {
+            return newStateStore();
+        }
+        return ForkJoinPool.commonPool().invoke(new MergeTask(results, 0, results.size()));
+    }
 
-            // Libérer la mémoire immédiatement
-            threadResults.set(i, null);
+    /**
+     * Tâche de fusion d'une tranche de tables : chaque moitié est réduite en
+     * parallèle, puis la plus petite table est versée dans la plus grande.
+     */
+    private static class MergeTask extends RecursiveTask<StateStore> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<StateStore> results;
+        private final int from;
+        private final int to;
+
+        MergeTask(List<StateStore> results, int from, int to) {
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected StateStore compute() {
+            if (to - from == 1) {
+                return results.get(from);
+            }
+            int middle = (from + to) >>> 1;
+            MergeTask left = new MergeTask(results, from, middle);
+            left.fork();
+            StateStore right = new MergeTask(results, middle, to).compute();
+            StateStore merged = left.join();
+
+            if (merged.size() < right.size()) {
+                StateStore smaller = merged;
+                merged = right;
+                right = smaller;
+            }
+            merged.merge(right);
+            right.release();
+            return merged;
         }
     }
 
     public void startGamesWithUniqueStatesSequential(int nbParties, Model model1, Model model2) {
         System.out.println("Début des " + nbParties + " parties (version séquentielle)...");
 
-        Map<String, double[]> stateMap = new HashMap<>();
-        StateBuffer stateBuffer = new StateBuffer();
+        StateStore stateMap = newStateStore();
+        StateBuffer stateBuffer = newStateBuffer();
 
         for (int i = 0; i < nbParties; i++) {
             Board board = new Board();
@@ -488,19 +610,7 @@ public abstract class GameStateExporter {
 
             // Traiter chaque état du jeu
             for (CompressedState state : history) {
-                String key = state.toString();
-                stateMap.compute(key, (k, v) -> {
-                    if (v == null) {
-                        double[] newState = state.decompress();
-                        newState[64] = finalResult;
-                        newState[65] = 1.0;
-                        return newState;
-                    } else {
-                        v[64] += finalResult;
-                        v[65] += 1.0;
-                        return v;
-                    }
-                });
+                stateMap.add(state.black(), state.white(), finalResult);
             }
 
             if ((i + 1) % 100 == 0) {
@@ -511,6 +621,7 @@ public abstract class GameStateExporter {
 
         exportStateMap(stateMap);
         System.out.println("Terminé! " + stateMap.size() + " situations uniques sauvegardées.");
+        stateMap.release();
     }
 
     public void startGamesParallel(int nbParties, Model model1, Model model2, int nbThreads) {
@@ -574,8 +685,8 @@ public abstract class GameStateExporter {
         System.out.println("Début des " + nbParties + " parties...\n");
         ProgressBar progressBar = new ProgressBar(nbParties, 0);
 
-        Map<String, double[]> stateMap = new HashMap<>();
-        StateBuffer stateBuffer = new StateBuffer();
+        StateStore stateMap = newStateStore();
+        StateBuffer stateBuffer = newStateBuffer();
 
         for (int i = 0; i < nbParties; i++) {
             Board board = new Board();
@@ -594,19 +705,7 @@ public abstract class GameStateExporter {
 
             // Traiter chaque état du jeu
             for (CompressedState state : history) {
-                String key = state.toString();
-                stateMap.compute(key, (k, v) -> {
-                    if (v == null) {
-                        double[] newState = state.decompress();
-                        newState[64] = finalResult;
-                        newState[65] = 1.0;
-                        return newState;
-                    } else {
-                        v[64] += finalResult;
-                        v[65] += 1.0;
-                        return v;
-                    }
-                });
+                stateMap.add(state.black(), state.white(), finalResult);
             }
 
             if ((i + 1) % 10 == 0) {
@@ -617,6 +716,7 @@ public abstract class GameStateExporter {
         progressBar.update(nbParties);
         exportStateMap(stateMap);
         System.out.println("\nTerminé! " + stateMap.size() + " situations uniques sauvegardées dans " + outputPath);
+        stateMap.release();
     }
 
     /**
@@ -632,7 +732,7 @@ public abstract class GameStateExporter {
         System.out.println("Début des " + nbParties + " parties avec " + nbThreads + " threads...\n");
         ProgressBar.initDisplay(nbThreads);
 
-        List<Map<String, double[]>> threadResults = new ArrayList<>(nbThreads);
+        List<StateStore> threadResults = new ArrayList<>(nbThreads);
         Thread[] threads = new Thread[nbThreads];
         int partiesPerThread = nbParties / nbThreads;
 
@@ -641,12 +741,12 @@ public abstract class GameStateExporter {
             final int partiesForThisThread = (i == nbThreads - 1) ? partiesPerThread + (nbParties % nbThreads)
                     : partiesPerThread;
 
-            Map<String, double[]> threadMap = new HashMap<>();
+            StateStore threadMap = newStateStore();
             threadResults.add(threadMap);
             ProgressBar progressBar = new ProgressBar(partiesForThisThread, threadId);
 
             threads[i] = new Thread(() -> {
-                StateBuffer stateBuffer = new StateBuffer();
+                StateBuffer stateBuffer = newStateBuffer();
 
                 for (int j = 0; j < partiesForThisThread; j++) {
                     Board board = new Board();
@@ -662,19 +762,7 @@ public abstract class GameStateExporter {
                     finalResult = result == 1 ? 1.0 : result == 0 ? 0.5 : 0.0;
 
                     for (CompressedState state : history) {
-                        String key = state.toString();
-                        threadMap.compute(key, (k, v) -> {
-                            if (v == null) {
-                                double[] newState = state.decompress();
-                                newState[64] = finalResult;
-                                newState[65] = 1.0;
-                                return newState;
-                            } else {
-                                v[64] += finalResult;
-                                v[65] += 1.0;
-                                return v;
-                            }
-                        });
+                        threadMap.add(state.black(), state.white(), finalResult);
                     }
 
                     if ((j + 1) % 10 == 0) {
@@ -698,14 +786,14 @@ public abstract class GameStateExporter {
         }
 
         // Fusion des résultats de tous les threads
-        Map<String, double[]> finalMap = new HashMap<>();
-        streamMerge(threadResults, finalMap);
+        StateStore finalMap = streamMerge(threadResults);
 
         // Export des résultats
         exportStateMap(finalMap);
 
         System.out.print(String.format("\033[%dH\n", nbThreads + 2));
         System.out.println("Terminé! " + finalMap.size() + " situations uniques sauvegardées dans " + outputPath);
+        finalMap.release();
     }
 
     public static void main(String[] args) {
@@ -3,6 +3,7 @@ package com.parallelai.export.implementations;
 import com.parallelai.exec.play.GameManager;
 import com.parallelai.export.GameStateExporter;
 import com.parallelai.export.utilities.GameExporterUtils.*;
+import com.parallelai.export.utilities.StateStore;
 import com.parallelai.game.Board;
 import com.parallelai.models.RandomModel;
 import com.parallelai.models.utils.Model;
@@ -63,7 +64,7 @@ public class ClassicThreadExporter extends GameStateExporter {
             boolean appendToExisting) {
         // Initialisation des structures de données pour le suivi des états et
         // statistiques
-        Map<String, double[]> existingData = new HashMap<>();
+        StateStore existingData = null;
         GameStats globalStats = new GameStats();
 
         // Gestion des données existantes si demandé (mode fusion)
@@ -79,9 +80,7 @@ public class ClassicThreadExporter extends GameStateExporter {
 
         // Configuration du multithreading
         Thread[] threads = new Thread[nbThreads];
-        @SuppressWarnings("unchecked")
-        Map<String, double[]>[] threadResults = new HashMap[nbThreads]; // Un HashMap par thread pour éviter les
-                                                                        // conflits
+        StateStore[] threadResults = new StateStore[nbThreads]; // Une table par thread pour éviter les conflits
         ProgressBar[] progressBars = new ProgressBar[nbThreads]; // Barres de progression individuelles
 
         // Distribution équitable des parties entre les threads
@@ -92,9 +91,9 @@ public class ClassicThreadExporter extends GameStateExporter {
         for (int i = 0; i < nbThreads; i++) {
             // Configuration spécifique à chaque thread
             final int threadId = i;
-            threadResults[i] = new HashMap<>(); // Map locale pour ce thread
-            final Map<String, double[]> localStateMap = threadResults[i];
-            final StateBuffer stateBuffer = new StateBuffer(); // Buffer d'états pour ce thread
+            threadResults[i] = newStateStore(); // Table locale pour ce thread
+            final StateStore localStateMap = threadResults[i];
+            final StateBuffer stateBuffer = newStateBuffer(); // Buffer d'états pour ce thread
 
             // Ajustement du nombre de parties pour le dernier thread
             final int partiesForThisThread = (i == nbThreads - 1) ? partiesPerThread + (nbParties % nbThreads)
@@ -171,36 +170,23 @@ public class ClassicThreadExporter extends GameStateExporter {
         System.out.print(String.format("\033[%dH\n", nbThreads + 2));
 
         // Fusion des résultats de tous les threads
-        List<Map<String, double[]>> allResults = new ArrayList<>(nbThreads);
+        List<StateStore> allResults = new ArrayList<>(nbThreads);
         for (int i = 0; i < threadResults.length; i++) {
             allResults.add(threadResults[i]);
             threadResults[i] = null; // Libération de la mémoire
         }
 
         // Création de la map finale des résultats
-        Map<String, double[]> finalMap = new HashMap<>();
-        streamMerge(allResults, finalMap);
+        StateStore finalMap = streamMerge(allResults);
 
         // Fusion avec les données existantes si nécessaire
         if (appendToExisting) {
-            // Fusion intelligente des données existantes avec les nouvelles
-            Map<String, double[]> mergedMap = new HashMap<>(existingData); // Copie les données existantes
-
-            finalMap.forEach((key, newValue) -> {
-                mergedMap.compute(key, (k, existingValue) -> {
-                    if (existingValue == null) {
-                        return newValue.clone(); // Nouvelle donnée
-                    } else {
-                        // Mettre à jour les compteurs et moyennes
-                        existingValue[65] += newValue[65]; // Somme totale
-                        existingValue[66] += newValue[66]; // Nombre d'occurrences
-                        // existingValue[64] sera recalculé à l'export
-                        return existingValue;
-                    }
-                });
-            });
+            // Fusion des nouvelles données dans les données existantes :
+            // sommes et occurrences s'ajoutent, la moyenne est recalculée à l'export
+            existingData.merge(finalMap);
+            finalMap.release();
 
-            finalMap = mergedMap; // Remplace finalMap par la version fusionnée
+            finalMap = existingData; // Remplace finalMap par la version fusionnée
         }
 
         // Nettoyage final et export des résultats
@@ -208,6 +194,7 @@ public class ClassicThreadExporter extends GameStateExporter {
         allResults = null;
         exportStateMap(finalMap);
         System.out.println("Terminé! " + finalMap.size() + " situations uniques sauvegardées.");
+        finalMap.release();
         displayGameStats(globalStats);
     }
 
@@ -234,7 +221,7 @@ public class ClassicThreadExporter extends GameStateExporter {
         // 3. Possibilité d'accéder aux paramètres spécifiques des AI
 
         // Structures de données et configuration initiale
-        Map<String, double[]> existingData = new HashMap<>();
+        StateStore existingData = null;
         GameStats globalStats = new GameStats();
 
         // Charger les données existantes seulement si demandé
@@ -250,8 +237,7 @@ public class ClassicThreadExporter extends GameStateExporter {
 
         // Configuration du multithreading similaire
         Thread[] threads = new Thread[nbThreads];
-        @SuppressWarnings("unchecked")
-        Map<String, double[]>[] threadResults = new HashMap[nbThreads];
+        StateStore[] threadResults = new StateStore[nbThreads];
         ProgressBar[] progressBars = new ProgressBar[nbThreads];
 
         int partiesPerThread = nbParties / nbThreads;
@@ -260,9 +246,9 @@ public class ClassicThreadExporter extends GameStateExporter {
         // Création des threads avec gestion spécifique AI
         for (int i = 0; i < nbThreads; i++) {
             final int threadId = i;
-            threadResults[i] = new HashMap<>();
-            final Map<String, double[]> localStateMap = threadResults[i];
-            final StateBuffer stateBuffer = new StateBuffer();
+            threadResults[i] = newStateStore();
+            final StateStore localStateMap = threadResults[i];
+            final StateBuffer stateBuffer = newStateBuffer();
 
             final int partiesForThisThread = (i == nbThreads - 1) ? partiesPerThread + (nbParties % nbThreads)
                     : partiesPerThread;
@@ -322,34 +308,21 @@ public class ClassicThreadExporter extends GameStateExporter {
         // Move cursor below progress bars
         System.out.print(String.format("\033[%dH\n", nbThreads + 2));
 
-        List<Map<String, double[]>> allResults = new ArrayList<>(nbThreads);
+        List<StateStore> allResults = new ArrayList<>(nbThreads);
         for (int i = 0; i < threadResults.length; i++) {
             allResults.add(threadResults[i]);
             threadResults[i] = null; // Libérer la mémoire immédiatement
         }
 
-        Map<String, double[]> finalMap = new HashMap<>();
-        streamMerge(allResults, finalMap);
+        StateStore finalMap = streamMerge(allResults);
 
         if (appendToExisting) {
-            // Fusion intelligente des données existantes avec les nouvelles
-            Map<String, double[]> mergedMap = new HashMap<>(existingData); // Copie les données existantes
-
-            finalMap.forEach((key, newValue) -> {
-                mergedMap.compute(key, (k, existingValue) -> {
-                    if (existingValue == null) {
-                        return newValue.clone(); // Nouvelle donnée
-                    } else {
-                        // Mettre à jour les compteurs et moyennes
-                        existingValue[65] += newValue[65]; // Somme totale
-                        existingValue[66] += newValue[66]; // Nombre d'occurrences
-                        // existingValue[64] sera recalculé à l'export
-                        return existingValue;
-                    }
-                });
-            });
+            // Fusion des nouvelles données dans les données existantes :
+            // sommes et occurrences s'ajoutent, la moyenne est recalculée à l'export
+            existingData.merge(finalMap);
+            finalMap.release();
 
-            finalMap = mergedMap; // Remplace finalMap par la version fusionnée
+            finalMap = existingData; // Remplace finalMap par la version fusionnée
         }
 
         // Libérer la mémoire
@@ -358,6 +331,7 @@ public class ClassicThreadExporter extends GameStateExporter {
 
         exportStateMap(finalMap);
         System.out.println("Terminé! " + finalMap.size() + " situations uniques sauvegardées.");
+        finalMap.release();
         displayGameStats(globalStats);
     }
 
@@ -390,7 +364,7 @@ public class ClassicThreadExporter extends GameStateExporter {
         // 3. Possibilité d'ajuster les poids pendant la partie
 
         // Configuration initiale similaire
-        Map<String, double[]> existingData = new HashMap<>();
+        StateStore existingData = null;
         GameStats globalStats = new GameStats();
 
         // Charger les données existantes seulement si demandé
@@ -406,8 +380,7 @@ public class ClassicThreadExporter extends GameStateExporter {
 
         // Configuration du multithreading avec gestion des poids
         Thread[] threads = new Thread[nbThreads];
-        @SuppressWarnings("unchecked")
-        Map<String, double[]>[] threadResults = new HashMap[nbThreads];
+        StateStore[] threadResults = new StateStore[nbThreads];
         ProgressBar[] progressBars = new ProgressBar[nbThreads];
 
         int partiesPerThread = nbParties / nbThreads;
@@ -416,9 +389,9 @@ public class ClassicThreadExporter extends GameStateExporter {
         // Création des threads avec gestion de la pondération
         for (int i = 0; i < nbThreads; i++) {
             final int threadId = i;
-            threadResults[i] = new HashMap<>();
-            final Map<String, double[]> localStateMap = threadResults[i];
-            final StateBuffer stateBuffer = new StateBuffer();
+            threadResults[i] = newStateStore();
+            final StateStore localStateMap = threadResults[i];
+            final StateBuffer stateBuffer = newStateBuffer();
 
             final int partiesForThisThread = (i == nbThreads - 1) ? partiesPerThread + (nbParties % nbThreads)
                     : partiesPerThread;
@@ -478,34 +451,21 @@ public class ClassicThreadExporter extends GameStateExporter {
         // Move cursor below progress bars
         System.out.print(String.format("\033[%dH\n", nbThreads + 2));
 
-        List<Map<String, double[]>> allResults = new ArrayList<>(nbThreads);
+        List<StateStore> allResults = new ArrayList<>(nbThreads);
         for (int i = 0; i < threadResults.length; i++) {
             allResults.add(threadResults[i]);
             threadResults[i] = null; // Libérer la mémoire immédiatement
         }
 
-        Map<String, double[]> finalMap = new HashMap<>();
-        streamMerge(allResults, finalMap);
+        StateStore finalMap = streamMerge(allResults);
 
         if (appendToExisting) {
-            // Fusion intelligente des données existantes avec les nouvelles
-            Map<String, double[]> mergedMap = new HashMap<>(existingData); // Copie les données existantes
-
-            finalMap.forEach((key, newValue) -> {
-                mergedMap.compute(key, (k, existingValue) -> {
-                    if (existingValue == null) {
-                        return newValue.clone(); // Nouvelle donnée
-                    } else {
-                        // Mettre à jour les compteurs et moyennes
-                        existingValue[65] += newValue[65]; // Somme totale
-                        existingValue[66] += newValue[66]; // Nombre d'occurrences
-                        // existingValue[64] sera recalculé à l'export
-                        return existingValue;
-                    }
-                });
-            });
+            // Fusion des nouvelles données dans les données existantes :
+            // sommes et occurrences s'ajoutent, la moyenne est recalculée à l'export
+            existingData.merge(finalMap);
+            finalMap.release();
 
-            finalMap = mergedMap; // Remplace finalMap par la version fusionnée
+            finalMap = existingData; // Remplace finalMap par la version fusionnée
         }
 
         // Libérer la mémoire
@@ -514,6 +474,7 @@ public class ClassicThreadExporter extends GameStateExporter {
 
         exportStateMap(finalMap);
         System.out.println("Terminé! " + finalMap.size() + " situations uniques sauvegardées.");
+        finalMap.release();
         displayGameStats(globalStats);
     }
 
@@ -526,52 +487,16 @@ public class ClassicThreadExporter extends GameStateExporter {
      * @param localMap    Map locale du thread pour stocker les états
      * @param finalResult Résultat final de la partie
      */
-    private void processBatchLocal(List<GameState> batch, Map<String, double[]> localMap, double finalResult) {
+    private void processBatchLocal(List<GameState> batch, StateStore localMap, double finalResult) {
         // Traitement de chaque état du lot
         for (GameState game : batch) {
             // Conversion du résultat en valeur numérique
             double gameResult = game.result == 1 ? 1.0 : game.result == 0 ? 0.5 : 0.0;
 
-            // Traitement de chaque état de l'historique de la partie
+            // Chaque état de l'historique ajoute une occurrence et son résultat
             for (CompressedState state : game.history) {
-                String key = state.toString();
-                processStateLocal(localMap, key, state, gameResult);
-            }
-        }
-    }
-
-    /**
-     * Traite un état individuel et l'ajoute à la map locale du thread.
-     * Gère la création de nouveaux états ou la mise à jour des états existants.
-     * 
-     * @param localMap    Map locale du thread
-     * @param key         Clé unique de l'état
-     * @param state       État compressé à traiter
-     * @param finalResult Résultat final associé à cet état
-     */
-    private void processStateLocal(Map<String, double[]> localMap, String key, CompressedState state,
-            double finalResult) {
-        double[] existing = localMap.get(key);
-        if (existing == null) {
-            // Création d'un nouvel état
-            double[] newState = state.decompress();
-
-            // Vérification et ajustement de la taille du tableau
-            if (newState.length != 67) {
-                double[] resizedState = new double[67];
-                System.arraycopy(newState, 0, resizedState, 0, Math.min(newState.length, 67));
-                newState = resizedState;
+                localMap.add(state.black(), state.white(), gameResult);
             }
-
-            // Initialisation des métriques de l'état
-            newState[64] = 0; // moyenne (calculée à l'export)
-            newState[65] = finalResult; // somme totale
-            newState[66] = 1.0; // nombre d'occurrences
-            localMap.put(key, newState);
-        } else {
-            // Mise à jour d'un état existant
-            existing[65] += finalResult; // Ajout à la somme
-            existing[66] += 1.0; // Incrémentation du compteur
         }
     }
 
@@ -630,7 +555,7 @@ public class ClassicThreadExporter extends GameStateExporter {
         // Récupérer le nombre de situations de la première exécution
         int firstRunSize = 0;
         try {
-            Map<String, double[]> firstRunData = exporter.loadExistingCSV();
+            StateStore firstRunData = exporter.loadExistingCSV();
             firstRunSize = firstRunData.size();
             System.out.println("\nNombre de situations après première exécution : " + firstRunSize);
         } catch (Exception e) {
@@ -649,7 +574,7 @@ public class ClassicThreadExporter extends GameStateExporter {
 
         // Vérifier le nombre final de situations
         try {
-            Map<String, double[]> finalData = exporter2.loadExistingCSV();
+            StateStore finalData = exporter2.loadExistingCSV();
             System.out.println("\nNombre de situations après fusion : " + finalData.size());
             System.out.println("Différence : " + (finalData.size() - firstRunSize) + " nouvelles situations");
         } catch (Exception e) {
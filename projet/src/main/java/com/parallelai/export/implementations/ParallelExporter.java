@@ -3,21 +3,42 @@ package com.parallelai.export.implementations;
 import com.parallelai.exec.play.GameManager;
 import com.parallelai.export.GameStateExporter;
 import com.parallelai.export.utilities.GameExporterUtils.*;
+import com.parallelai.export.utilities.ConcurrentStateMap;
+import com.parallelai.export.utilities.ShardedStateStore;
+import com.parallelai.export.utilities.StateStore;
 import com.parallelai.game.Board;
 import com.parallelai.models.utils.Model;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Implémentation parallélisée de l'exportateur d'états de jeu.
  * Cette classe propose différentes stratégies de parallélisation pour l'export
  * des données :
- * - Utilisation de ConcurrentHashMap pour la synchronisation
+ * - Table d'états partagée sans verrou (ConcurrentStateMap)
  * - Version sans synchronisation avec fusion finale des résultats
+ * - Agrégation partitionnée en shards, sans phase de fusion
  * - Gestion optimisée de la mémoire avec buffers locaux
  */
 public class ParallelExporter extends GameStateExporter {
 
+    /** Estimation du nombre d'états uniques par partie, pour dimensionner les tables */
+    private static final int STATES_PER_GAME = 60;
+
+    /** Nombre d'états par lot envoyé à un shard */
+    private static final int SHARD_BATCH_SIZE = 4096;
+
+    /** Nombre maximal de lots en attente dans la file d'un shard */
+    private static final int SHARD_QUEUE_CAPACITY = 64;
+
+    /**
+     * Attente maximale d'une place dans une file pleine avant de vérifier que
+     * les consommateurs sont toujours en vie, en millisecondes
+     */
+    private static final long SHARD_OFFER_TIMEOUT_MS = 100;
+
     /**
      * Crée un nouvel exportateur parallèle.
      *
@@ -28,8 +49,9 @@ public class ParallelExporter extends GameStateExporter {
     }
 
     /**
-     * Lance plusieurs parties en parallèle avec synchronisation via
-     * ConcurrentHashMap.
+     * Lance plusieurs parties en parallèle avec une table d'états partagée.
+     * Tous les threads écrivent directement dans une {@link ConcurrentStateMap}
+     * sans verrou : ni copie locale, ni fusion finale.
      * Utilise une barre de progression par thread pour suivre l'avancement.
      *
      * @param nbParties Nombre total de parties à jouer
@@ -41,10 +63,11 @@ public class ParallelExporter extends GameStateExporter {
         System.out.println("Début des " + nbParties + " parties avec " + nbThreads + " threads...\n");
         ProgressBar.initDisplay(nbThreads);
 
-        ConcurrentHashMap<String, double[]> globalStateMap = new ConcurrentHashMap<>();
+        ConcurrentStateMap globalStateMap = new ConcurrentStateMap(
+                (int) Math.min(Integer.MAX_VALUE, (long) nbParties * STATES_PER_GAME));
 
         try (ExecutorService executor = Executors.newFixedThreadPool(nbThreads)) {
-            List<Future<Map<String, double[]>>> futures = new ArrayList<>();
+            List<Future<?>> futures = new ArrayList<>();
             int partiesPerThread = nbParties / nbThreads;
 
             for (int i = 0; i < nbThreads; i++) {
@@ -52,23 +75,15 @@ public class ParallelExporter extends GameStateExporter {
                         : partiesPerThread;
 
                 GameThread thread = new GameThread(partiesForThisThread, model1, model2,
-                        new ProgressBar(partiesForThisThread, i));
+                        new ProgressBar(partiesForThisThread, i), globalStateMap);
 
-                futures.add(executor.submit(() -> {
-                    thread.execute();
-                    return thread.getStateMap();
-                }));
+                futures.add(executor.submit(thread::execute));
             }
 
-            // Fusion des résultats
-            for (Future<Map<String, double[]>> future : futures) {
+            // Attente de la fin des parties
+            for (Future<?> future : futures) {
                 try {
-                    future.get().forEach((key, value) -> globalStateMap.merge(key, value, (existing, newVal) -> {
-                        existing[65] += newVal[65]; // Somme totale
-                        existing[66] += newVal[66]; // Nombre d'occurrences
-                        // existing[64] sera recalculé à l'export
-                        return existing;
-                    }));
+                    future.get();
                 } catch (Exception e) {
                     System.err.println("Erreur thread: " + e.getMessage());
                 }
@@ -78,24 +93,21 @@ public class ParallelExporter extends GameStateExporter {
 
             System.out.print(String.format("\033[%dH\n", nbThreads + 2));
             System.out.println("Terminé! " + globalStateMap.size() + " situations uniques sauvegardées.");
+            globalStateMap.release();
         }
     }
 
     /**
-     * Thread de jeu avec gestion des collisions via ConcurrentHashMap.
-     * Utilise un buffer local pour réduire la fréquence des synchronisations.
+     * Thread de jeu écrivant directement dans la table d'états partagée.
+     * Chaque état est ajouté par une opération atomique, sans verrou.
      */
     public class GameThread {
-        // Constantes
-        private static final int BATCH_SIZE = 1000; // Taille du lot pour le traitement par batch
-
         // Champs de la classe
         private final int nbParties;
         private final Model model1, model2;
         private final ProgressBar progressBar;
-        private final ConcurrentHashMap<String, double[]> stateMap;
+        private final StateStore stateMap;
         private final StateBuffer stateBuffer;
-        private Map<String, double[]> localBuffer;
 
         /**
          * Initialise un nouveau thread de jeu avec synchronisation.
@@ -104,35 +116,32 @@ public class ParallelExporter extends GameStateExporter {
          * @param model1      Premier modèle (joueur noir)
          * @param model2      Second modèle (joueur blanc)
          * @param progressBar Barre de progression associée à ce thread
+         * @param stateMap    Table d'états partagée, sûre en accès concurrent
          */
-        public GameThread(int nbParties, Model model1, Model model2, ProgressBar progressBar) {
+        public GameThread(int nbParties, Model model1, Model model2, ProgressBar progressBar,
+                StateStore stateMap) {
             this.nbParties = nbParties;
             this.model1 = model1;
             this.model2 = model2;
             this.progressBar = progressBar;
-            this.stateMap = new ConcurrentHashMap<>();
-            this.stateBuffer = new StateBuffer();
-            this.localBuffer = new HashMap<>();
+            this.stateMap = stateMap;
+            this.stateBuffer = newStateBuffer();
         }
 
         /**
-         * Exécute les parties assignées à ce thread avec gestion par lots.
-         * Utilise un buffer local pour accumuler les états avant synchronisation.
+         * Exécute les parties assignées à ce thread.
+         * Les états de chaque partie sont ajoutés à la table partagée dès la
+         * fin de la partie, lorsque son résultat est connu.
          */
         public void execute() {
-            // Utiliser un buffer pour accumuler les états avant traitement
-            List<GameState> gameStates = new ArrayList<>(BATCH_SIZE);
             int gamesCompleted = 0;
 
             for (int i = 0; i < nbParties; i++) {
-                gameStates.add(processGame());
+                GameState game = processGame();
+                double finalResult = game.result == 1 ? 1.0 : game.result == 0 ? 0.5 : 0.0;
 
-                if (gameStates.size() >= BATCH_SIZE) {
-                    // Traiter d'abord localement
-                    processBatchLocally(gameStates);
-                    // Synchroniser avec la map globale moins fréquemment
-                    synchronizeWithGlobalMap();
-                    gameStates.clear();
+                for (CompressedState state : game.history) {
+                    stateMap.add(state.black(), state.white(), finalResult);
                 }
 
                 gamesCompleted++;
@@ -141,11 +150,6 @@ public class ParallelExporter extends GameStateExporter {
                 }
             }
 
-            if (!gameStates.isEmpty()) {
-                processBatchLocally(gameStates);
-                synchronizeWithGlobalMap();
-            }
-
             progressBar.update(nbParties);
         }
 
@@ -163,55 +167,6 @@ public class ParallelExporter extends GameStateExporter {
 
             return new GameState(history, calculateGameResult(board));
         }
-
-        /**
-         * Traite un lot d'états de jeu localement avant synchronisation.
-         * Optimise les performances en réduisant les accès concurrents.
-         */
-        private void processBatchLocally(List<GameState> gameStates) {
-            for (GameState game : gameStates) {
-                double finalResult = game.result == 1 ? 1.0 : game.result == 0 ? 0.5 : 0.0;
-
-                for (CompressedState state : game.history) {
-                    String key = state.toString();
-                    processStateLocally(key, state, finalResult);
-                }
-            }
-        }
-
-        private void processStateLocally(String key, CompressedState state, double finalResult) {
-            localBuffer.compute(key, (k, v) -> {
-                if (v == null) {
-                    double[] newState = state.decompress();
-                    newState[64] = 0; // Moyenne (calculée à l'export)
-                    newState[65] = finalResult; // Somme totale
-                    newState[66] = 1.0; // Nombre d'occurrences
-                    return newState;
-                } else {
-                    v[65] += finalResult; // Ajouter à la somme
-                    v[66] += 1.0; // Incrémenter occurrences
-                    return v;
-                }
-            });
-        }
-
-        private void synchronizeWithGlobalMap() {
-            localBuffer.forEach((key, value) -> stateMap.merge(key, value.clone(), (existing, newVal) -> {
-                existing[65] += newVal[65]; // Somme totale
-                existing[66] += newVal[66]; // Nombre d'occurrences
-                return existing;
-            }));
-            localBuffer.clear();
-        }
-
-        /**
-         * Récupère la map d'états de jeu accumulés par ce thread.
-         *
-         * @return Map contenant les états de jeu uniques et leurs statistiques
-         */
-        public Map<String, double[]> getStateMap() {
-            return stateMap;
-        }
     }
 
     /**
@@ -225,7 +180,7 @@ public class ParallelExporter extends GameStateExporter {
         ProgressBar.initDisplay(nbThreads);
 
         try (ExecutorService executor = Executors.newFixedThreadPool(nbThreads)) {
-            List<Future<Map<String, double[]>>> futures = new ArrayList<>();
+            List<Future<StateStore>> futures = new ArrayList<>();
 
             // Utiliser un nombre optimal de threads
             int optimalThreads = Math.min(nbThreads, Runtime.getRuntime().availableProcessors());
@@ -246,8 +201,8 @@ public class ParallelExporter extends GameStateExporter {
             }
 
             // Fusionner les résultats à la fin
-            List<Map<String, double[]>> allResults = new ArrayList<>(nbThreads);
-            for (Future<Map<String, double[]>> future : futures) {
+            List<StateStore> allResults = new ArrayList<>(nbThreads);
+            for (Future<StateStore> future : futures) {
                 try {
                     allResults.add(future.get());
                 } catch (Exception e) {
@@ -256,8 +211,7 @@ public class ParallelExporter extends GameStateExporter {
             }
 
             // Utiliser la nouvelle méthode de fusion optimisée
-            final Map<String, double[]> finalMap = new HashMap<>();
-            streamMerge(allResults, finalMap);
+            final StateStore finalMap = streamMerge(allResults);
 
             // Libérer la mémoire explicitement
             allResults.clear();
@@ -268,6 +222,7 @@ public class ParallelExporter extends GameStateExporter {
 
             System.out.print(String.format("\033[%dH\n", nbThreads + 2));
             System.out.println("Terminé! " + finalMap.size() + " situations uniques sauvegardées.");
+            finalMap.release();
         }
     }
 
@@ -283,7 +238,7 @@ public class ParallelExporter extends GameStateExporter {
         private final int nbParties;
         private final Model model1, model2;
         private final ProgressBar progressBar;
-        private final Map<String, double[]> stateMap;
+        private final StateStore stateMap;
         private final StateBuffer stateBuffer;
 
         /**
@@ -299,8 +254,8 @@ public class ParallelExporter extends GameStateExporter {
             this.model1 = model1;
             this.model2 = model2;
             this.progressBar = progressBar;
-            this.stateMap = new HashMap<>(nbParties * 10);
-            this.stateBuffer = new StateBuffer();
+            this.stateMap = newStateStore(nbParties * 10);
+            this.stateBuffer = newStateBuffer();
         }
 
         /**
@@ -360,18 +315,7 @@ public class ParallelExporter extends GameStateExporter {
                 double finalResult = game.result == 1 ? 1.0 : game.result == 0 ? 0.5 : 0.0;
 
                 for (CompressedState state : game.history) {
-                    String key = state.toString();
-                    double[] existing = stateMap.get(key);
-                    if (existing == null) {
-                        existing = state.decompress();
-                        existing[64] = 0; // Moyenne (calculée à l'export)
-                        existing[65] = finalResult; // Somme totale
-                        existing[66] = 1.0; // Nombre d'occurrences
-                        stateMap.put(key, existing);
-                    } else {
-                        existing[65] += finalResult; // Ajouter à la somme
-                        existing[66] += 1.0; // Incrémenter occurrences
-                    }
+                    stateMap.add(state.black(), state.white(), finalResult);
                 }
             }
         }
@@ -381,9 +325,313 @@ public class ParallelExporter extends GameStateExporter {
          *
          * @return Map contenant les états de jeu uniques et leurs statistiques
          */
-        public Map<String, double[]> getStateMap() {
+        public StateStore getStateMap() {
             return stateMap;
         }
     }
 
+    /**
+     * Lance plusieurs parties en parallèle avec agrégation partitionnée.
+     * Chaque état est routé selon son empreinte vers l'un des nbShards shards ;
+     * chaque shard est possédé par un unique thread consommateur alimenté par
+     * une file bornée. Les shards étant disjoints, le résultat est exporté
+     * directement, sans phase de fusion, et la mémoire de chaque shard reste
+     * bornée à sa part des états.
+     *
+     * Si un consommateur échoue (budget mémoire dépassé par exemple), les
+     * threads de jeu s'arrêtent au lieu d'attendre indéfiniment une place
+     * dans sa file, et l'exception du consommateur est relancée.
+     *
+     * @param nbParties Nombre total de parties à jouer
+     * @param model1    Premier modèle (joueur noir)
+     * @param model2    Second modèle (joueur blanc)
+     * @param nbThreads Nombre de threads de jeu
+     * @param nbShards  Nombre de shards (et de threads consommateurs)
+     * @throws RuntimeException L'exception d'un consommateur de shard en échec
+     */
+    public void startGamesWithUniqueStatesSharded(int nbParties, Model model1, Model model2, int nbThreads,
+            int nbShards) {
+        System.out.println("Début des " + nbParties + " parties avec " + nbThreads + " threads et " + nbShards
+                + " shards...\n");
+        ProgressBar.initDisplay(nbThreads);
+
+        // Un shard, une file et un consommateur par partition
+        int expectedPerShard = (int) Math.min(Integer.MAX_VALUE, (long) nbParties * STATES_PER_GAME / nbShards);
+        StateStore[] shards = new StateStore[nbShards];
+        List<BlockingQueue<StateBatch>> queues = new ArrayList<>(nbShards);
+        for (int s = 0; s < nbShards; s++) {
+            shards[s] = newStateStore(expectedPerShard);
+            queues.add(new ArrayBlockingQueue<>(SHARD_QUEUE_CAPACITY));
+        }
+        ShardedStateStore finalMap = new ShardedStateStore(shards);
+
+        // Première exception d'un consommateur : arrête les producteurs
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicInteger consumerIds = new AtomicInteger();
+        ExecutorService consumerPool = Executors.newFixedThreadPool(nbShards,
+                task -> new Thread(task, "shard-" + consumerIds.getAndIncrement()));
+        List<Future<?>> consumers = new ArrayList<>(nbShards);
+
+        try {
+            for (int s = 0; s < nbShards; s++) {
+                consumers.add(consumerPool.submit(new ShardConsumer(queues.get(s), shards[s], failure)));
+            }
+
+            try (ExecutorService executor = Executors.newFixedThreadPool(nbThreads)) {
+                List<Future<?>> futures = new ArrayList<>();
+                int partiesPerThread = nbParties / nbThreads;
+
+                for (int i = 0; i < nbThreads; i++) {
+                    int partiesForThisThread = (i == nbThreads - 1) ? partiesPerThread + (nbParties % nbThreads)
+                            : partiesPerThread;
+
+                    GameThreadSharded thread = new GameThreadSharded(partiesForThisThread, model1, model2,
+                            new ProgressBar(partiesForThisThread, i), queues, failure);
+
+                    futures.add(executor.submit(thread::execute));
+                }
+
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        // Un producteur arrêté par l'échec d'un consommateur n'est pas une erreur de plus
+                        if (failure.get() == null) {
+                            System.err.println("Erreur thread: " + e.getCause().getMessage());
+                        }
+                    }
+                }
+            }
+
+            // Signaler la fin aux consommateurs et attendre qu'ils vident leurs files
+            for (BlockingQueue<StateBatch> queue : queues) {
+                send(queue, StateBatch.END, failure);
+            }
+            for (Future<?> consumer : consumers) {
+                consumer.get();
+            }
+        } catch (ExecutionException e) {
+            failure.compareAndSet(null, e.getCause());
+        } catch (IllegalStateException e) {
+            // Envoi de fin impossible : l'échec est déjà enregistré
+            failure.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+            System.err.println("Interruption pendant l'attente des shards");
+            Thread.currentThread().interrupt();
+            finalMap.release();
+            return;
+        } finally {
+            consumerPool.shutdownNow();
+        }
+
+        Throwable error = failure.get();
+        if (error != null) {
+            finalMap.release();
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            throw new IllegalStateException("Échec d'un consommateur de shard", error);
+        }
+
+        exportStateMap(finalMap);
+
+        System.out.print(String.format("\033[%dH\n", nbThreads + 2));
+        System.out.println("Terminé! " + finalMap.size() + " situations uniques sauvegardées.");
+        finalMap.release();
+    }
+
+    /**
+     * Lot d'états à destination d'un shard : tableaux parallèles des plateaux
+     * et des résultats.
+     */
+    private static final class StateBatch {
+        /** Marqueur de fin de production */
+        static final StateBatch END = new StateBatch(0);
+
+        final long[] blacks;
+        final long[] whites;
+        final double[] results;
+        int size;
+
+        StateBatch(int capacity) {
+            blacks = new long[capacity];
+            whites = new long[capacity];
+            results = new double[capacity];
+        }
+
+        boolean isFull() {
+            return size == blacks.length;
+        }
+    }
+
+    /**
+     * Dépose un lot dans la file d'un shard. L'attente d'une place est
+     * interrompue dès qu'un consommateur a échoué : sa file ne se viderait
+     * plus.
+     *
+     * @throws IllegalStateException Si un consommateur a échoué
+     */
+    private static void send(BlockingQueue<StateBatch> queue, StateBatch batch, AtomicReference<Throwable> failure)
+            throws InterruptedException {
+        do {
+            checkConsumers(failure);
+        } while (!queue.offer(batch, SHARD_OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * @throws IllegalStateException Si un consommateur de shard a échoué
+     */
+    private static void checkConsumers(AtomicReference<Throwable> failure) {
+        Throwable error = failure.get();
+        if (error != null) {
+            throw new IllegalStateException("Consommateur de shard arrêté : " + error.getMessage(), error);
+        }
+    }
+
+    /**
+     * Consommateur d'un shard : seul thread à écrire dans sa table.
+     * Une exception est enregistrée dans failure avant de terminer la tâche,
+     * pour que les producteurs cessent d'alimenter les files.
+     */
+    private static final class ShardConsumer implements Runnable {
+        private final BlockingQueue<StateBatch> queue;
+        private final StateStore shard;
+        private final AtomicReference<Throwable> failure;
+
+        ShardConsumer(BlockingQueue<StateBatch> queue, StateStore shard, AtomicReference<Throwable> failure) {
+            this.queue = queue;
+            this.shard = shard;
+            this.failure = failure;
+        }
+
+        @Override
+        public void run() {
+            try {
+                StateBatch batch;
+                while ((batch = queue.take()) != StateBatch.END) {
+                    for (int i = 0; i < batch.size; i++) {
+                        shard.add(batch.blacks[i], batch.whites[i], batch.results[i]);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Arrêt demandé après l'échec d'un autre consommateur
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException | Error e) {
+                failure.compareAndSet(null, e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Thread de jeu routant ses états vers les shards.
+     * Les états sont accumulés dans un lot par shard, envoyé dans la file du
+     * shard lorsqu'il est plein. Les files bornées freinent les threads de
+     * jeu si les consommateurs prennent du retard.
+     */
+    private class GameThreadSharded {
+        private final int nbParties;
+        private final Model model1, model2;
+        private final ProgressBar progressBar;
+        private final List<BlockingQueue<StateBatch>> queues;
+        private final AtomicReference<Throwable> failure;
+        private final StateBatch[] pending;
+        private final StateBuffer stateBuffer;
+
+        /**
+         * Initialise un nouveau thread de jeu partitionné.
+         *
+         * @param nbParties   Nombre de parties à jouer dans ce thread
+         * @param model1      Premier modèle (joueur noir)
+         * @param model2      Second modèle (joueur blanc)
+         * @param progressBar Barre de progression associée à ce thread
+         * @param queues      Files des shards, indexées par shard
+         * @param failure     Échec éventuel d'un consommateur
+         */
+        public GameThreadSharded(int nbParties, Model model1, Model model2, ProgressBar progressBar,
+                List<BlockingQueue<StateBatch>> queues, AtomicReference<Throwable> failure) {
+            this.nbParties = nbParties;
+            this.model1 = model1;
+            this.model2 = model2;
+            this.progressBar = progressBar;
+            this.queues = queues;
+            this.failure = failure;
+            this.pending = new StateBatch[queues.size()];
+            this.stateBuffer = newStateBuffer();
+            for (int s = 0; s < pending.length; s++) {
+                pending[s] = new StateBatch(SHARD_BATCH_SIZE);
+            }
+        }
+
+        /**
+         * Exécute les parties assignées à ce thread puis envoie les lots
+         * incomplets.
+         */
+        public void execute() {
+            try {
+                for (int i = 0; i < nbParties; i++) {
+                    checkConsumers(failure);
+                    processBatchLocal(processGame());
+
+                    if ((i + 1) % 100 == 0) {
+                        progressBar.update(i + 1);
+                    }
+                }
+
+                for (int s = 0; s < pending.length; s++) {
+                    if (pending[s].size > 0) {
+                        send(queues.get(s), pending[s], failure);
+                    }
+                }
+            } catch (InterruptedException e) {
+                System.err.println("Interruption pendant l'envoi des états aux shards");
+                Thread.currentThread().interrupt();
+            }
+
+            progressBar.update(nbParties);
+        }
+
+        /**
+         * Traite une partie unique et collecte son historique.
+         *
+         * @return GameState contenant l'historique de la partie et son résultat final
+         */
+        private GameState processGame() {
+            Board board = new Board();
+            GameManager game = new GameManager(board, model1, model2);
+            List<CompressedState> history = new ArrayList<>();
+
+            while (game.playNextMove()) {
+                history.add(stateBuffer.compressState(board));
+            }
+
+            return new GameState(history, calculateGameResult(board));
+        }
+
+        /**
+         * Route les états d'une partie vers les lots de leurs shards.
+         *
+         * @param game La partie terminée
+         */
+        private void processBatchLocal(GameState game) throws InterruptedException {
+            double finalResult = game.result == 1 ? 1.0 : game.result == 0 ? 0.5 : 0.0;
+
+            for (CompressedState state : game.history) {
+                int shard = ShardedStateStore.shardOf(state.black(), state.white(), pending.length);
+                StateBatch batch = pending[shard];
+                batch.blacks[batch.size] = state.black();
+                batch.whites[batch.size] = state.white();
+                batch.results[batch.size] = finalResult;
+                batch.size++;
+
+                if (batch.isFull()) {
+                    send(queues.get(shard), batch, failure);
+                    pending[shard] = new StateBatch(SHARD_BATCH_SIZE);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,130 @@
+package com.parallelai.export.utilities;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lecture des fichiers au format binaire de {@link BinaryStateWriter}.
+ */
+public class BinaryStateReader {
+    /** Taille du tampon de lecture, multiple de la taille d'une ligne */
+    private static final int BUFFER_ROWS = 1 << 15;
+
+    /**
+     * Reçoit les lignes d'un fichier binaire.
+     */
+    @FunctionalInterface
+    public interface RowConsumer {
+        /**
+         * @param black Le bitboard des pions noirs
+         * @param white Le bitboard des pions blancs
+         * @param label La moyenne des résultats (valeur cible)
+         * @param sum   La somme des résultats
+         * @param count Le nombre d'occurrences
+         */
+        void accept(long black, long white, float label, double sum, int count);
+    }
+
+    private BinaryStateReader() {
+    }
+
+    /**
+     * Indique si un fichier est au format binaire, d'après son nombre magique.
+     *
+     * @param path Chemin du fichier
+     * @return true si le fichier existe et commence par le nombre magique
+     */
+    public static boolean isBinary(String path) {
+        Path file = Paths.get(path);
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header);
+            return !header.hasRemaining() && header.getInt(0) == BinaryStateWriter.MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Lit le nombre de lignes annoncé par l'en-tête d'un fichier binaire.
+     *
+     * @param path Chemin du fichier binaire
+     * @return Le nombre de lignes du fichier
+     * @throws IOException Si le fichier est illisible ou n'est pas au format
+     */
+    public static long rowCount(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            return readHeader(channel);
+        }
+    }
+
+    /**
+     * Parcourt toutes les lignes d'un fichier binaire.
+     *
+     * @param path     Chemin du fichier binaire
+     * @param consumer Le consommateur appelé pour chaque ligne
+     * @return Le nombre de lignes lues
+     * @throws IOException Si le fichier est illisible ou n'est pas au format
+     */
+    public static long read(String path, RowConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long rows = readHeader(channel);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_ROWS * BinaryStateWriter.ROW_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            long read = 0;
+            while (read < rows) {
+                buffer.clear();
+                long remainingBytes = (rows - read) * BinaryStateWriter.ROW_BYTES;
+                if (remainingBytes < buffer.capacity()) {
+                    buffer.limit((int) remainingBytes);
+                }
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        throw new IOException("Fichier binaire tronqué : " + read + "/" + rows + " lignes");
+                    }
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    long black = buffer.getLong();
+                    long white = buffer.getLong();
+                    float label = buffer.getFloat();
+                    int count = buffer.getInt();
+                    consumer.accept(black, white, label, buffer.getDouble(), count);
+                    read++;
+                }
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Vérifie l'en-tête et renvoie le nombre de lignes annoncé.
+     */
+    private static long readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(BinaryStateWriter.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header) < 0) {
+                throw new IOException("En-tête binaire incomplet");
+            }
+        }
+        header.flip();
+        if (header.getInt() != BinaryStateWriter.MAGIC) {
+            throw new IOException("Fichier non reconnu : nombre magique invalide");
+        }
+        int version = header.getInt();
+        if (version != BinaryStateWriter.VERSION) {
+            throw new IOException("Version de format binaire non supportée : " + version);
+        }
+        return header.getLong();
+    }
+}
@@ -0,0 +1,169 @@
+package com.parallelai.export.utilities;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Écriture des états de jeu au format binaire compact.
+ *
+ * Format (petit-boutiste) :
+ * - en-tête de {@value #HEADER_BYTES} octets : nombre magique "OTHB" (int),
+ *   version (int), nombre de lignes (long)
+ * - lignes de {@value #ROW_BYTES} octets : noirs (long), blancs (long),
+ *   moyenne (float), occurrences (int), somme (double)
+ *
+ * Une ligne occupe 32 octets contre environ 300 en CSV. La somme reste en
+ * double et le nombre d'occurrences en entier, comme dans les tables
+ * d'états : les ajouts successifs au même fichier gardent des totaux
+ * exacts. Le nombre de lignes est écrit à la fermeture du fichier.
+ */
+public class BinaryStateWriter implements StateWriter {
+    /** Nombre magique identifiant le format : "OTHB" */
+    public static final int MAGIC = 0x4F544842;
+
+    /** Version courante du format */
+    public static final int VERSION = 2;
+
+    /** Taille de l'en-tête en octets */
+    public static final int HEADER_BYTES = 16;
+
+    /** Taille d'une ligne en octets */
+    public static final int ROW_BYTES = 32;
+
+    /** Taille du tampon d'écriture */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long rowCount;
+
+    /**
+     * Ouvre le fichier en écriture, en écrasant son contenu.
+     *
+     * @param outputPath Chemin du fichier binaire
+     * @throws IOException Si le fichier ne peut pas être ouvert
+     */
+    public BinaryStateWriter(String outputPath) throws IOException {
+        this.channel = FileChannel.open(Paths.get(outputPath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        // En-tête provisoire : le nombre de lignes est complété à la fermeture
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(0L);
+    }
+
+    @Override
+    public void writeRow(long black, long white, double sum, int count) throws IOException {
+        if (buffer.remaining() < ROW_BYTES) {
+            flush();
+        }
+        buffer.putLong(black)
+                .putLong(white)
+                .putFloat((float) (sum / count))
+                .putInt(count)
+                .putDouble(sum);
+        rowCount++;
+    }
+
+    /**
+     * Vide le tampon, complète l'en-tête et ferme le fichier.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            ByteBuffer count = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(rowCount);
+            count.flip();
+            channel.write(count, HEADER_BYTES - 8);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * @return Le nombre de lignes écrites
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Convertit un dataset CSV au format binaire.
+     * Accepte les lignes complètes (64 cases, moyenne, somme, occurrences)
+     * comme les lignes réduites (64 cases et valeur cible, comptée comme une
+     * occurrence). Un éventuel en-tête non numérique est ignoré.
+     *
+     * @param csvPath    Chemin du fichier CSV source
+     * @param binaryPath Chemin du fichier binaire à créer
+     * @return Le nombre de lignes converties
+     * @throws IOException Si la lecture ou l'écriture échoue
+     */
+    public static long convertCsv(String csvPath, String binaryPath) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(csvPath));
+                BinaryStateWriter writer = new BinaryStateWriter(binaryPath)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (parts.length < 65) {
+                    continue;
+                }
+
+                long black = 0;
+                long white = 0;
+                try {
+                    for (int i = 0; i < 64; i++) {
+                        double value = Double.parseDouble(parts[i]);
+                        if (value > 0) {
+                            black |= 1L << i;
+                        } else if (value < 0) {
+                            white |= 1L << i;
+                        }
+                    }
+
+                    if (parts.length >= 67) {
+                        writer.writeRow(black, white, Double.parseDouble(parts[65]),
+                                (int) Double.parseDouble(parts[66]));
+                    } else {
+                        writer.writeRow(black, white, Double.parseDouble(parts[64]), 1);
+                    }
+                } catch (NumberFormatException e) {
+                    // Ligne d'en-tête ou ligne corrompue
+                    continue;
+                }
+            }
+            return writer.getRowCount();
+        }
+    }
+
+    /**
+     * Convertit un fichier CSV en binaire depuis la ligne de commande.
+     *
+     * @param args Chemin du CSV source et chemin du fichier binaire à créer
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage : BinaryStateWriter <fichier.csv> <fichier.bin>");
+            return;
+        }
+        try {
+            long rows = convertCsv(args[0], args[1]);
+            System.out.println(rows + " lignes converties dans " + args[1]);
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la conversion: " + e.getMessage());
+        }
+    }
+}
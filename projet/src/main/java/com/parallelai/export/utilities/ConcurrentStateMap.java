@@ -0,0 +1,226 @@
+package com.parallelai.export.utilities;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Table d'agrégation des états partagée par tous les threads, sans verrou.
+ * Les threads de jeu y écrivent directement : il n'y a plus ni copie locale
+ * ni fusion finale.
+ *
+ * La table est découpée en bandes choisies par les bits de poids fort de
+ * l'empreinte. Dans une bande, une case est réservée par CAS sur son état,
+ * puis ses compteurs sont mis à jour par un seul getAndAdd sur un mot de
+ * 64 bits :
+ * - 32 bits de poids fort : nombre d'occurrences
+ * - 32 bits de poids faible : somme des résultats en demi-unités
+ * Les résultats valant 0, 0.5 ou 1, la somme est exacte jusqu'à 2^31
+ * occurrences par état.
+ *
+ * La capacité est fixée à la création. Une bande pleine scelle ses cases
+ * libres et envoie les nouveaux états vers une ConcurrentHashMap de
+ * débordement : un état ne peut jamais se trouver aux deux endroits.
+ */
+public class ConcurrentStateMap implements StateStore {
+    /** Nombre de bits de l'empreinte utilisés pour choisir la bande */
+    private static final int STRIPE_BITS = 6;
+
+    /** Nombre de bandes de la table */
+    private static final int NB_STRIPES = 1 << STRIPE_BITS;
+
+    /** Capacité minimale d'une bande (puissance de 2) */
+    private static final int MIN_STRIPE_CAPACITY = 16;
+
+    /** Taux de remplissage au-delà duquel une bande déborde */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    // États d'une case
+    private static final int FREE = 0;
+    private static final int CLAIMED = 1;
+    private static final int READY = 2;
+    private static final int SEALED = 3;
+
+    /**
+     * Bande de la table : cases à sondage linéaire.
+     * Les clés sont écrites avant la publication de l'état READY, qui en
+     * garantit la visibilité aux autres threads.
+     */
+    private static final class Stripe {
+        final long[] keys;
+        final AtomicIntegerArray states;
+        final AtomicLongArray counters;
+        final AtomicInteger used = new AtomicInteger();
+        final int mask;
+        final int threshold;
+
+        Stripe(int capacity) {
+            keys = new long[capacity * 2];
+            states = new AtomicIntegerArray(capacity);
+            counters = new AtomicLongArray(capacity);
+            mask = capacity - 1;
+            threshold = (int) (capacity * LOAD_FACTOR);
+        }
+
+        /**
+         * Ajoute les compteurs à l'état donné s'il a sa place dans la bande.
+         *
+         * @return false si l'état doit être rangé dans le débordement
+         */
+        boolean add(long black, long white, long hash, long delta) {
+            int index = (int) hash & mask;
+            while (true) {
+                int state = states.get(index);
+                if (state == FREE) {
+                    if (used.incrementAndGet() > threshold) {
+                        // Bande pleine : sceller la case pour que tous les threads
+                        // cherchant cet état aillent dans le débordement
+                        used.decrementAndGet();
+                        if (states.compareAndSet(index, FREE, SEALED)) {
+                            return false;
+                        }
+                        continue; // Case prise entre-temps : la relire
+                    }
+                    if (!states.compareAndSet(index, FREE, CLAIMED)) {
+                        used.decrementAndGet();
+                        continue;
+                    }
+                    keys[index * 2] = black;
+                    keys[index * 2 + 1] = white;
+                    counters.getAndAdd(index, delta);
+                    states.set(index, READY);
+                    return true;
+                }
+                if (state == SEALED) {
+                    return false;
+                }
+                while (state == CLAIMED) {
+                    Thread.onSpinWait(); // Clé en cours d'écriture par un autre thread
+                    state = states.get(index);
+                }
+                if (keys[index * 2] == black && keys[index * 2 + 1] == white) {
+                    counters.getAndAdd(index, delta);
+                    return true;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+    }
+
+    /**
+     * Clé des états de débordement.
+     */
+    private static final class BoardKey {
+        final long black;
+        final long white;
+
+        BoardKey(long black, long white) {
+            this.black = black;
+            this.white = white;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof BoardKey))
+                return false;
+            BoardKey other = (BoardKey) o;
+            return black == other.black && white == other.white;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) StateMap.hash(black, white);
+        }
+    }
+
+    private final Stripe[] stripes;
+    private final ConcurrentHashMap<BoardKey, AtomicLong> overflow = new ConcurrentHashMap<>();
+
+    /**
+     * Crée une table partagée dimensionnée pour le nombre d'états attendu.
+     *
+     * @param expectedSize Nombre d'états uniques attendus
+     */
+    public ConcurrentStateMap(int expectedSize) {
+        int perStripe = (int) Math.min(1 << 30, (long) (expectedSize / NB_STRIPES / LOAD_FACTOR) + 1);
+        int capacity = Math.max(MIN_STRIPE_CAPACITY, Integer.highestOneBit(perStripe - 1) << 1);
+        this.stripes = new Stripe[NB_STRIPES];
+        for (int i = 0; i < NB_STRIPES; i++) {
+            stripes[i] = new Stripe(capacity);
+        }
+    }
+
+    /**
+     * Ajoute une somme de résultats et un nombre d'occurrences à un état.
+     * Peut être appelée simultanément par plusieurs threads. La somme est
+     * arrondie à la demi-unité.
+     */
+    @Override
+    public void add(long black, long white, double sum, int count) {
+        if (count <= 0) {
+            return;
+        }
+        long delta = ((long) count << 32) + Math.round(sum * 2);
+        long hash = StateMap.hash(black, white);
+        if (!stripes[(int) (hash >>> (64 - STRIPE_BITS))].add(black, white, hash, delta)) {
+            overflow.computeIfAbsent(new BoardKey(black, white), k -> new AtomicLong()).getAndAdd(delta);
+        }
+    }
+
+    /**
+     * Parcourt les états de la table. À appeler une fois les écritures
+     * terminées : un parcours concurrent aux écritures peut manquer les
+     * états en cours d'ajout.
+     */
+    @Override
+    public void forEach(EntryConsumer consumer) {
+        for (Stripe stripe : stripes) {
+            for (int i = 0; i <= stripe.mask; i++) {
+                if (stripe.states.get(i) == READY) {
+                    long packed = stripe.counters.get(i);
+                    consumer.accept(stripe.keys[i * 2], stripe.keys[i * 2 + 1],
+                            (packed & 0xFFFFFFFFL) * 0.5, (int) (packed >>> 32));
+                }
+            }
+        }
+        overflow.forEach((key, counter) -> {
+            long packed = counter.get();
+            consumer.accept(key.black, key.white, (packed & 0xFFFFFFFFL) * 0.5, (int) (packed >>> 32));
+        });
+    }
+
+    /**
+     * Vide la table. Ne doit pas être appelée pendant des écritures.
+     */
+    @Override
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            for (int i = 0; i <= stripe.mask; i++) {
+                stripe.states.set(i, FREE);
+                stripe.counters.set(i, 0);
+            }
+            stripe.used.set(0);
+        }
+        overflow.clear();
+    }
+
+    @Override
+    public int size() {
+        int size = overflow.size();
+        for (Stripe stripe : stripes) {
+            size += stripe.used.get();
+        }
+        return size;
+    }
+
+    /**
+     * @return Le nombre d'états rangés dans le débordement faute de place
+     */
+    public int getOverflowSize() {
+        return overflow.size();
+    }
+}
@@ -0,0 +1,165 @@
+package com.parallelai.export.utilities;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Écriture en flux des états de jeu au format CSV.
+ * Les lignes sont encodées directement en octets dans un grand tampon
+ * réutilisé, vidé dans un {@link FileChannel} lorsqu'il est plein :
+ * - les cases (1.0, -1.0, 0.0) sont copiées depuis une table d'octets
+ *   précalculée
+ * - les nombres sont formatés sans passer par String ni StringBuilder
+ *
+ * Le format produit est identique à celui de l'export historique, à ceci
+ * près que les nombres non entiers sont écrits avec au plus 9 décimales.
+ */
+public class CsvStateWriter implements StateWriter {
+    /** Taille du tampon d'écriture */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** Taille maximale d'une ligne : 64 cases de 5 octets et 3 nombres */
+    private static final int MAX_ROW_BYTES = 64 * 5 + 3 * 32;
+
+    /** Nombre de décimales des nombres non entiers */
+    private static final int DECIMALS = 9;
+    private static final long DECIMAL_SCALE = 1_000_000_000L;
+
+    /** Texte des cases, indexé par (bit blanc << 1) | bit noir */
+    private static final byte[][] CELLS = {
+            "0.0,".getBytes(StandardCharsets.US_ASCII),
+            "1.0,".getBytes(StandardCharsets.US_ASCII),
+            "-1.0,".getBytes(StandardCharsets.US_ASCII),
+    };
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] digits = new byte[20];
+
+    /**
+     * Ouvre le fichier en écriture, en écrasant son contenu.
+     *
+     * @param outputPath Chemin du fichier CSV
+     * @throws IOException Si le fichier ne peut pas être ouvert
+     */
+    public CsvStateWriter(String outputPath) throws IOException {
+        this.channel = FileChannel.open(Paths.get(outputPath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * Écrit une ligne complète : 64 cases, moyenne, somme et occurrences.
+     */
+    @Override
+    public void writeRow(long black, long white, double sum, int count) throws IOException {
+        reserveRow();
+        putCells(black, white);
+        putDouble(sum / count);
+        buffer.put((byte) ',');
+        putDouble(sum);
+        buffer.put((byte) ',');
+        putLong(count);
+        buffer.put((byte) '.').put((byte) '0').put((byte) '\n');
+    }
+
+    /**
+     * Écrit une ligne réduite : 64 cases et la valeur cible.
+     */
+    @Override
+    public void writeLabelRow(long black, long white, double sum, int count) throws IOException {
+        reserveRow();
+        putCells(black, white);
+        putDouble(sum / count);
+        buffer.put((byte) '\n');
+    }
+
+    /**
+     * Vide le tampon et ferme le fichier.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void reserveRow() throws IOException {
+        if (buffer.remaining() < MAX_ROW_BYTES) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void putCells(long black, long white) {
+        for (int i = 0; i < 64; i++) {
+            buffer.put(CELLS[(int) ((black >>> i) & 1L) | (int) ((white >>> i) & 1L) << 1]);
+        }
+    }
+
+    /**
+     * Écrit un entier positif ou négatif en décimal.
+     */
+    private void putLong(long value) {
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int length = 0;
+        do {
+            digits[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (length > 0) {
+            buffer.put(digits[--length]);
+        }
+    }
+
+    /**
+     * Écrit un nombre réel : les entiers sous la forme "n.0", les autres
+     * avec au plus {@value #DECIMALS} décimales, sans zéros finaux.
+     */
+    private void putDouble(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= 1e9) {
+            buffer.put(Double.toString(value).getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+
+        long scaled = Math.round(value * DECIMAL_SCALE);
+        putLong(scaled / DECIMAL_SCALE);
+        buffer.put((byte) '.');
+
+        long fraction = scaled % DECIMAL_SCALE;
+        if (fraction == 0) {
+            buffer.put((byte) '0');
+            return;
+        }
+        int length = DECIMALS;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            length--;
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            digits[i] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        buffer.put(digits, 0, length);
+    }
+}
@@ -1,9 +1,7 @@
 package com.parallelai.export.utilities;
 
 import java.util.Base64;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 
 import com.parallelai.game.Board;
 import com.parallelai.game.Disc;
@@ -83,73 +81,80 @@ public class GameExporterUtils {
     }
 
     /**
-     * Gestionnaire de buffer pour la compression et mise en cache des états de jeu.
-     * Utilise un système de cache LRU pour optimiser les accès répétés.
+     * Gestionnaire de compression des états de jeu.
+     * Un état compressé se réduit aux deux bitboards du plateau : la
+     * compression est immédiate et ne nécessite plus de cache.
+     * En mode canonique, chaque plateau est ramené à sa forme canonique par
+     * rotation/réflexion avant compression : les 8 images d'une position
+     * partagent alors la même clé et sont dédupliquées ensemble.
      */
     public static class StateBuffer {
-        @SuppressWarnings("unused")
-        private final char[] buffer;
-        private final LRUCache<Board, CompressedState> cache;
+        private final boolean canonical;
 
         public StateBuffer() {
-            this.buffer = new char[64];
-            this.cache = new LRUCache<>(1000); // Cache des 1000 derniers états
+            this(false);
+        }
+
+        /**
+         * @param canonical true pour compresser les plateaux sous leur forme
+         *                  canonique (déduplication des symétries)
+         */
+        public StateBuffer(boolean canonical) {
+            this.canonical = canonical;
         }
 
         public CompressedState compressState(Board board) {
-            CompressedState cached = cache.get(board);
-            if (cached != null)
-                return cached;
-
-            Disc[][] grid = board.getGrid();
-            int idx = 0;
-            byte[] compressed = new byte[16]; // 64 positions = 16 bytes (4 positions par byte)
-
-            for (int i = 0; i < 8; i++) {
-                for (int j = 0; j < 8; j++) {
-                    int value = grid[i][j] == Disc.BLACK ? 1 : grid[i][j] == Disc.WHITE ? 2 : 0;
-                    compressed[idx / 4] |= (value << ((idx % 4) * 2));
-                    idx++;
-                }
+            long black = board.getBitboard(Disc.BLACK);
+            long white = board.getBitboard(Disc.WHITE);
+            if (!canonical) {
+                return new CompressedState(black, white, board.hash());
             }
 
-            CompressedState state = new CompressedState(compressed);
-            cache.put(board.copy(), state);
-            return state;
+            int symmetry = board.canonicalSymmetry();
+            black = Board.transform(black, symmetry);
+            white = Board.transform(white, symmetry);
+            return new CompressedState(black, white, Board.hashOf(black, white));
         }
     }
 
     /**
-     * Cache à capacité limitée utilisant une politique de remplacement LRU
-     * (Least Recently Used).
-     * 
-     * @param <K> Type de la clé
-     * @param <V> Type de la valeur
+     * Représentation compressée d'un état de jeu.
+     * Le plateau est conservé sous forme de deux bitboards (128 bits), ce qui
+     * en fait aussi la clé des tables d'états ({@link StateMap}).
+     * Conserve l'empreinte de Zobrist du plateau.
      */
-    public static class LRUCache<K, V> extends LinkedHashMap<K, V> {
-        private final int maxSize;
-
-        public LRUCache(int maxSize) {
-            super(16, 0.75f, true);
-            this.maxSize = maxSize;
+    public static class CompressedState {
+        private final long black;
+        private final long white;
+        private final long hash;
+
+        public CompressedState(long black, long white, long hash) {
+            this.black = black;
+            this.white = white;
+            this.hash = hash;
         }
 
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-            return size() > maxSize;
+        /**
+         * @return Le bitboard des pions noirs
+         */
+        public long black() {
+            return black;
         }
-    }
 
-    /**
-     * Représentation compressée d'un état de jeu.
-     * Utilise 2 bits par case pour encoder l'état (vide/noir/blanc),
-     * réduisant ainsi la taille mémoire nécessaire.
-     */
-    public static class CompressedState {
-        private final byte[] data;
+        /**
+         * @return Le bitboard des pions blancs
+         */
+        public long white() {
+            return white;
+        }
 
-        public CompressedState(byte[] data) {
-            this.data = data;
+        /**
+         * Renvoie l'empreinte de Zobrist du plateau compressé.
+         *
+         * @return L'empreinte 64 bits de l'état
+         */
+        public long hash() {
+            return hash;
         }
 
         /**
@@ -158,16 +163,21 @@ public class GameExporterUtils {
          * @return Un tableau de 67 éléments contenant l'état du jeu et ses métadonnées
          */
         public double[] decompress() {
-            double[] state = new double[67]; // Changer 66 en 67
+            double[] state = new double[67];
             for (int i = 0; i < 64; i++) {
-                int value = (data[i / 4] >> ((i % 4) * 2)) & 0x3;
-                state[i] = value == 1 ? 1.0 : value == 2 ? -1.0 : 0.0;
+                state[i] = ((black >>> i) & 1L) != 0 ? 1.0 : ((white >>> i) & 1L) != 0 ? -1.0 : 0.0;
             }
             return state;
         }
 
         @Override
         public String toString() {
+            // Même encodage que l'ancien format : 2 bits par case, 4 cases par octet
+            byte[] data = new byte[16];
+            for (int idx = 0; idx < 64; idx++) {
+                int value = ((int) (black >>> idx) & 1) | (((int) (white >>> idx) & 1) << 1);
+                data[idx / 4] |= (byte) (value << ((idx % 4) * 2));
+            }
             return Base64.getEncoder().encodeToString(data);
         }
     }
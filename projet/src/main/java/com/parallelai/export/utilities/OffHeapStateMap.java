@@ -0,0 +1,380 @@
+package com.parallelai.export.utilities;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Cleaner;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Table d'agrégation des états de jeu stockée hors du tas Java.
+ * Les entrées sont rangées dans des {@link ByteBuffer} directs : le ramasse-
+ * miettes ne voit que quelques objets par table, quel que soit le nombre
+ * d'états, et ses pauses restent constantes même pour des millions de
+ * positions.
+ *
+ * La table est dimensionnée en octets : elle grandit par segments dans la
+ * limite d'un budget mémoire, puis refuse toute nouvelle position plutôt
+ * que de perdre des données en silence. Le budget peut être partagé par
+ * plusieurs tables (une par thread, par shard...) : il borne alors la
+ * mémoire hors tas de toutes ces tables ensemble.
+ *
+ * Le tampon remplacé lors de l'agrandissement d'un segment est libéré tout
+ * de suite, et {@link #release()} libère la table entière. Si la JVM ne
+ * permet pas cette libération explicite, la mémoire est rendue par le
+ * ramasse-miettes, et le budget n'est crédité qu'à ce moment.
+ *
+ * Disposition d'une case (32 octets) :
+ * - noirs (long), blancs (long), somme (double), occurrences (int), remplissage
+ *
+ * Cette classe n'est pas thread-safe : chaque thread utilise sa propre table.
+ */
+public class OffHeapStateMap implements StateStore {
+    /** Nombre de bits de l'empreinte utilisés pour choisir le segment */
+    private static final int SEGMENT_BITS = 6;
+
+    /** Nombre de segments de la table */
+    private static final int NB_SEGMENTS = 1 << SEGMENT_BITS;
+
+    /** Capacité initiale d'un segment, en cases (puissance de 2) */
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+
+    /** Capacité maximale d'un segment : un ByteBuffer est limité à 2 Go */
+    private static final int MAX_SEGMENT_CAPACITY = 1 << 25;
+
+    /** Taux de remplissage au-delà duquel un segment est agrandi */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /** Taille d'une case en octets */
+    private static final int SLOT_BYTES = 32;
+
+    // Décalages des champs dans une case
+    private static final int BLACK = 0;
+    private static final int WHITE = 8;
+    private static final int SUM = 16;
+    private static final int COUNT = 24;
+
+    /** Crédite le budget des tampons libérés par le ramasse-miettes */
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    /** Libération explicite d'un tampon direct, ou null si indisponible */
+    private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+    /**
+     * Octets d'un tampon décomptés du budget, crédités une seule fois : à la
+     * libération explicite du tampon, ou à défaut par le ramasse-miettes.
+     */
+    private static final class Reservation implements Runnable {
+        private final AtomicLong allocated;
+        private final long bytes;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Reservation(AtomicLong allocated, long bytes) {
+            this.allocated = allocated;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void run() {
+            if (released.compareAndSet(false, true)) {
+                allocated.addAndGet(-bytes);
+            }
+        }
+    }
+
+    /**
+     * Segment de la table : un tampon direct à sondage linéaire.
+     * Une case est libre tant que son compteur d'occurrences vaut 0.
+     */
+    private final class Segment {
+        ByteBuffer slots;
+        Reservation reservation;
+        int capacity;
+        int size;
+        int threshold;
+
+        Segment(int capacity) {
+            allocate(capacity);
+        }
+
+        void allocate(int capacity) {
+            long bytes = (long) capacity * SLOT_BYTES;
+            reserve(bytes);
+            Reservation reservation = new Reservation(budget, bytes);
+            ByteBuffer slots;
+            try {
+                slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES).order(ByteOrder.nativeOrder());
+            } catch (OutOfMemoryError e) {
+                reservation.run();
+                throw e;
+            }
+            CLEANER.register(slots, reservation);
+            this.slots = slots;
+            this.reservation = reservation;
+            this.capacity = capacity;
+            threshold = (int) (capacity * LOAD_FACTOR);
+            allocatedBytes += bytes;
+        }
+
+        /**
+         * Libère le tampon courant du segment.
+         */
+        void free() {
+            allocatedBytes -= (long) capacity * SLOT_BYTES;
+            OffHeapStateMap.free(slots, reservation);
+            slots = null;
+            reservation = null;
+        }
+
+        /**
+         * Ajoute une somme et un nombre d'occurrences à l'état donné.
+         *
+         * @return true si l'état n'existait pas encore
+         */
+        boolean add(long black, long white, long hash, double sum, int count) {
+            int mask = capacity - 1;
+            int index = (int) hash & mask;
+            int offset;
+            while (slots.getInt((offset = index * SLOT_BYTES) + COUNT) != 0) {
+                if (slots.getLong(offset + BLACK) == black && slots.getLong(offset + WHITE) == white) {
+                    slots.putDouble(offset + SUM, slots.getDouble(offset + SUM) + sum);
+                    slots.putInt(offset + COUNT, slots.getInt(offset + COUNT) + count);
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+
+            if (size >= threshold) {
+                grow();
+                return add(black, white, hash, sum, count);
+            }
+            slots.putLong(offset + BLACK, black);
+            slots.putLong(offset + WHITE, white);
+            slots.putDouble(offset + SUM, sum);
+            slots.putInt(offset + COUNT, count);
+            size++;
+            return true;
+        }
+
+        /**
+         * Double la capacité du segment et y réinsère ses entrées, puis
+         * libère le tampon précédent.
+         */
+        void grow() {
+            if (capacity >= MAX_SEGMENT_CAPACITY) {
+                throw new IllegalStateException("Segment hors tas plein (" + capacity + " états)");
+            }
+            ByteBuffer oldSlots = slots;
+            Reservation oldReservation = reservation;
+            int oldCapacity = capacity;
+
+            allocate(oldCapacity << 1);
+            int mask = capacity - 1;
+            for (int i = 0; i < oldCapacity; i++) {
+                int from = i * SLOT_BYTES;
+                int count = oldSlots.getInt(from + COUNT);
+                if (count == 0) {
+                    continue;
+                }
+                long black = oldSlots.getLong(from + BLACK);
+                long white = oldSlots.getLong(from + WHITE);
+                int index = (int) StateMap.hash(black, white) & mask;
+                while (slots.getInt(index * SLOT_BYTES + COUNT) != 0) {
+                    index = (index + 1) & mask;
+                }
+                int to = index * SLOT_BYTES;
+                slots.putLong(to + BLACK, black);
+                slots.putLong(to + WHITE, white);
+                slots.putDouble(to + SUM, oldSlots.getDouble(from + SUM));
+                slots.putInt(to + COUNT, count);
+            }
+            allocatedBytes -= (long) oldCapacity * SLOT_BYTES;
+            OffHeapStateMap.free(oldSlots, oldReservation);
+        }
+
+        void clear() {
+            for (int i = 0; i < capacity; i++) {
+                slots.putInt(i * SLOT_BYTES + COUNT, 0);
+            }
+            size = 0;
+        }
+    }
+
+    private final long maxBytes;
+    private final AtomicLong budget;
+    private long allocatedBytes;
+    private final Segment[] segments;
+    private int size;
+    private boolean released;
+
+    /**
+     * Crée une table hors tas limitée à son propre budget mémoire.
+     *
+     * @param maxBytes Nombre maximal d'octets hors tas occupés par la table
+     */
+    public OffHeapStateMap(long maxBytes) {
+        this(maxBytes, new AtomicLong());
+    }
+
+    /**
+     * Crée une table hors tas dont la mémoire est décomptée d'un budget
+     * partagé avec d'autres tables.
+     *
+     * @param maxBytes  Nombre maximal d'octets hors tas occupés par toutes
+     *                  les tables du budget
+     * @param allocated Compteur des octets occupés par ces tables, commun à
+     *                  toutes
+     */
+    public OffHeapStateMap(long maxBytes, AtomicLong allocated) {
+        if (maxBytes < (long) NB_SEGMENTS * MIN_SEGMENT_CAPACITY * SLOT_BYTES) {
+            throw new IllegalArgumentException("Budget mémoire hors tas trop faible : " + maxBytes + " octets");
+        }
+        this.maxBytes = maxBytes;
+        this.budget = allocated;
+        this.segments = new Segment[NB_SEGMENTS];
+        try {
+            for (int i = 0; i < NB_SEGMENTS; i++) {
+                segments[i] = new Segment(MIN_SEGMENT_CAPACITY);
+            }
+        } catch (RuntimeException | Error e) {
+            freeSegments();
+            throw e;
+        }
+    }
+
+    /**
+     * Réserve de la mémoire hors tas dans le budget.
+     * L'ancien tampon d'un segment agrandi n'est libéré qu'après la recopie :
+     * le budget couvre aussi ce pic transitoire.
+     */
+    private void reserve(long bytes) {
+        long total = budget.addAndGet(bytes);
+        if (total > maxBytes) {
+            budget.addAndGet(-bytes);
+            throw new IllegalStateException("Budget mémoire hors tas dépassé (" + maxBytes
+                    + " octets, " + size + " états dans cette table)");
+        }
+    }
+
+    /**
+     * Libère un tampon direct et crédite le budget. Si la libération
+     * explicite est indisponible, le ramasse-miettes s'en charge et le
+     * budget est crédité par le {@link Cleaner}.
+     */
+    private static void free(ByteBuffer buffer, Reservation reservation) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact(buffer);
+            reservation.run();
+        } catch (Throwable e) {
+            // Libération laissée au ramasse-miettes
+        }
+    }
+
+    /**
+     * Recherche Unsafe.invokeCleaner, qui libère un tampon direct sans
+     * attendre le ramasse-miettes.
+     */
+    private static MethodHandle findInvokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void add(long black, long white, double sum, int count) {
+        if (count <= 0) {
+            return;
+        }
+        if (released) {
+            throw new IllegalStateException("Table hors tas libérée");
+        }
+        long hash = StateMap.hash(black, white);
+        if (segments[(int) (hash >>> (64 - SEGMENT_BITS))].add(black, white, hash, sum, count)) {
+            size++;
+        }
+    }
+
+    @Override
+    public void forEach(EntryConsumer consumer) {
+        if (released) {
+            return;
+        }
+        for (Segment segment : segments) {
+            ByteBuffer slots = segment.slots;
+            for (int i = 0; i < segment.capacity; i++) {
+                int offset = i * SLOT_BYTES;
+                int count = slots.getInt(offset + COUNT);
+                if (count != 0) {
+                    consumer.accept(slots.getLong(offset + BLACK), slots.getLong(offset + WHITE),
+                            slots.getDouble(offset + SUM), count);
+                }
+            }
+        }
+    }
+
+    /**
+     * Vide la table en conservant sa capacité.
+     */
+    @Override
+    public void clear() {
+        if (released) {
+            return;
+        }
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+        size = 0;
+    }
+
+    /**
+     * Libère tous les tampons de la table et crédite le budget. La table ne
+     * peut plus recevoir d'états ensuite.
+     */
+    @Override
+    public void release() {
+        freeSegments();
+    }
+
+    /**
+     * Libère les tampons des segments alloués, y compris depuis le
+     * constructeur lorsqu'une allocation échoue.
+     */
+    private void freeSegments() {
+        if (released) {
+            return;
+        }
+        released = true;
+        for (Segment segment : segments) {
+            if (segment != null && segment.slots != null) {
+                segment.free();
+            }
+        }
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Le nombre d'octets hors tas actuellement occupés par la table
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
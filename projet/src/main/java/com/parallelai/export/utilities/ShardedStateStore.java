@@ -0,0 +1,87 @@
+package com.parallelai.export.utilities;
+
+/**
+ * Table d'états partitionnée en shards disjoints selon l'empreinte du plateau.
+ * Un état appartient toujours au même shard : les shards peuvent être
+ * alimentés chacun par un seul thread, puis parcourus ensemble sans aucune
+ * phase de fusion.
+ *
+ * Chaque shard est une table indépendante, ce qui borne la mémoire occupée
+ * par shard. Cette classe n'est pas thread-safe en elle-même : la sûreté
+ * vient de ce que chaque shard n'a qu'un seul écrivain.
+ */
+public class ShardedStateStore implements StateStore {
+    private final StateStore[] shards;
+
+    /**
+     * @param shards Les tables des shards, indexées par {@link #shardOf}
+     */
+    public ShardedStateStore(StateStore[] shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Calcule le shard d'un état.
+     * Utilise les bits 16 à 47 de l'empreinte, distincts des bits de poids
+     * fort (segment) et de poids faible (case) utilisés dans chaque table.
+     *
+     * @param black    Le bitboard des pions noirs
+     * @param white    Le bitboard des pions blancs
+     * @param nbShards Le nombre de shards
+     * @return L'indice du shard (0 à nbShards - 1)
+     */
+    public static int shardOf(long black, long white, int nbShards) {
+        long bits = (StateMap.hash(black, white) >>> 16) & 0xFFFFFFFFL;
+        return (int) ((bits * nbShards) >>> 32);
+    }
+
+    /**
+     * @return Le nombre de shards
+     */
+    public int getNbShards() {
+        return shards.length;
+    }
+
+    /**
+     * @param shard L'indice du shard
+     * @return La table du shard
+     */
+    public StateStore getShard(int shard) {
+        return shards[shard];
+    }
+
+    @Override
+    public void add(long black, long white, double sum, int count) {
+        shards[shardOf(black, white, shards.length)].add(black, white, sum, count);
+    }
+
+    @Override
+    public void forEach(EntryConsumer consumer) {
+        for (StateStore shard : shards) {
+            shard.forEach(consumer);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (StateStore shard : shards) {
+            shard.clear();
+        }
+    }
+
+    @Override
+    public void release() {
+        for (StateStore shard : shards) {
+            shard.release();
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (StateStore shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,192 @@
+package com.parallelai.export.utilities;
+
+import java.util.Arrays;
+
+/**
+ * Table d'agrégation des états de jeu à adressage ouvert, sans objets par
+ * entrée.
+ * Chaque état est identifié par son plateau sur 128 bits (bitboards des noirs
+ * et des blancs) et porte la somme des résultats et le nombre d'occurrences,
+ * stockés dans des tableaux primitifs parallèles.
+ *
+ * La table est découpée en segments indépendants choisis par les bits de poids
+ * fort de l'empreinte : un agrandissement ne redimensionne qu'un seul segment,
+ * ce qui évite les longues pauses de rehachage d'une table unique.
+ *
+ * Cette classe n'est pas thread-safe : chaque thread utilise sa propre table,
+ * fusionnée ensuite via {@link #merge(StateStore)}.
+ */
+public class StateMap implements StateStore {
+    /** Nombre de bits de l'empreinte utilisés pour choisir le segment */
+    private static final int SEGMENT_BITS = 6;
+
+    /** Nombre de segments de la table */
+    private static final int NB_SEGMENTS = 1 << SEGMENT_BITS;
+
+    /** Capacité minimale d'un segment (puissance de 2) */
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+
+    /** Taux de remplissage au-delà duquel un segment est agrandi */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * Segment de la table : tableaux parallèles à sondage linéaire.
+     * Une case est libre tant que son compteur d'occurrences vaut 0.
+     */
+    private static final class Segment {
+        long[] blacks;
+        long[] whites;
+        double[] sums;
+        int[] counts;
+        int size;
+        int threshold;
+
+        Segment(int capacity) {
+            allocate(capacity);
+        }
+
+        void allocate(int capacity) {
+            blacks = new long[capacity];
+            whites = new long[capacity];
+            sums = new double[capacity];
+            counts = new int[capacity];
+            threshold = (int) (capacity * LOAD_FACTOR);
+        }
+
+        /**
+         * Ajoute une somme et un nombre d'occurrences à l'état donné.
+         *
+         * @return true si l'état n'existait pas encore
+         */
+        boolean add(long black, long white, long hash, double sum, int count) {
+            int mask = counts.length - 1;
+            int index = (int) hash & mask;
+            while (counts[index] != 0) {
+                if (blacks[index] == black && whites[index] == white) {
+                    sums[index] += sum;
+                    counts[index] += count;
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+
+            blacks[index] = black;
+            whites[index] = white;
+            sums[index] = sum;
+            counts[index] = count;
+            if (++size > threshold) {
+                grow();
+            }
+            return true;
+        }
+
+        /**
+         * Double la capacité du segment et y réinsère ses entrées.
+         */
+        void grow() {
+            long[] oldBlacks = blacks;
+            long[] oldWhites = whites;
+            double[] oldSums = sums;
+            int[] oldCounts = counts;
+
+            allocate(oldCounts.length << 1);
+            int mask = counts.length - 1;
+            for (int i = 0; i < oldCounts.length; i++) {
+                if (oldCounts[i] == 0) {
+                    continue;
+                }
+                int index = (int) hash(oldBlacks[i], oldWhites[i]) & mask;
+                while (counts[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                blacks[index] = oldBlacks[i];
+                whites[index] = oldWhites[i];
+                sums[index] = oldSums[i];
+                counts[index] = oldCounts[i];
+            }
+        }
+
+        void clear() {
+            Arrays.fill(counts, 0);
+            size = 0;
+        }
+    }
+
+    private final Segment[] segments;
+    private int size;
+
+    /**
+     * Crée une table vide de capacité minimale.
+     */
+    public StateMap() {
+        this(0);
+    }
+
+    /**
+     * Crée une table dimensionnée pour le nombre d'états attendu.
+     *
+     * @param expectedSize Nombre d'états uniques attendus
+     */
+    public StateMap(int expectedSize) {
+        int perSegment = (int) Math.min(1 << 30, (long) (expectedSize / NB_SEGMENTS / LOAD_FACTOR) + 1);
+        int capacity = Math.max(MIN_SEGMENT_CAPACITY, Integer.highestOneBit(perSegment - 1) << 1);
+        this.segments = new Segment[NB_SEGMENTS];
+        for (int i = 0; i < NB_SEGMENTS; i++) {
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    @Override
+    public void add(long black, long white, double sum, int count) {
+        if (count <= 0) {
+            return;
+        }
+        long hash = hash(black, white);
+        if (segments[(int) (hash >>> (64 - SEGMENT_BITS))].add(black, white, hash, sum, count)) {
+            size++;
+        }
+    }
+
+    @Override
+    public void forEach(EntryConsumer consumer) {
+        for (Segment segment : segments) {
+            int[] counts = segment.counts;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    consumer.accept(segment.blacks[i], segment.whites[i], segment.sums[i], counts[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Vide la table en conservant sa capacité.
+     */
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Mélange les deux moitiés du plateau en une empreinte 64 bits bien
+     * répartie (finaliseur de MurmurHash3). Partagée par les implémentations
+     * de {@link StateStore}.
+     */
+    static long hash(long black, long white) {
+        long h = black * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(white * 0xC2B2AE3D27D4EB4FL, 31);
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
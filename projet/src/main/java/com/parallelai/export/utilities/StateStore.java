@@ -0,0 +1,92 @@
+package com.parallelai.export.utilities;
+
+/**
+ * Table d'agrégation des états de jeu.
+ * Chaque état est identifié par son plateau sur 128 bits (bitboards des noirs
+ * et des blancs) et porte la somme des résultats et le nombre d'occurrences
+ * observés. La moyenne est calculée à l'export.
+ *
+ * Implémentations :
+ * - {@link StateMap} : tableaux primitifs sur le tas
+ * - {@link OffHeapStateMap} : mémoire hors tas à budget fixe en octets,
+ *   éventuellement partagé entre plusieurs tables
+ */
+public interface StateStore {
+
+    /**
+     * Reçoit les entrées de la table lors d'un parcours.
+     */
+    @FunctionalInterface
+    interface EntryConsumer {
+        /**
+         * @param black Le bitboard des pions noirs
+         * @param white Le bitboard des pions blancs
+         * @param sum   La somme des résultats observés
+         * @param count Le nombre d'occurrences de l'état
+         */
+        void accept(long black, long white, double sum, int count);
+    }
+
+    /**
+     * Enregistre une occurrence d'un état avec son résultat.
+     *
+     * @param black  Le bitboard des pions noirs
+     * @param white  Le bitboard des pions blancs
+     * @param result Le résultat de la partie (1/0.5/0)
+     */
+    default void add(long black, long white, double result) {
+        add(black, white, result, 1);
+    }
+
+    /**
+     * Ajoute une somme de résultats et un nombre d'occurrences à un état.
+     * Les ajouts sans occurrence sont ignorés.
+     *
+     * @param black Le bitboard des pions noirs
+     * @param white Le bitboard des pions blancs
+     * @param sum   La somme des résultats à ajouter
+     * @param count Le nombre d'occurrences à ajouter
+     */
+    void add(long black, long white, double sum, int count);
+
+    /**
+     * Ajoute toutes les entrées d'une autre table à celle-ci.
+     *
+     * @param other La table à fusionner
+     */
+    default void merge(StateStore other) {
+        other.forEach(this::add);
+    }
+
+    /**
+     * Parcourt toutes les entrées de la table, sans ordre particulier.
+     *
+     * @param consumer Le consommateur appelé pour chaque état
+     */
+    void forEach(EntryConsumer consumer);
+
+    /**
+     * Vide la table.
+     */
+    void clear();
+
+    /**
+     * Libère immédiatement la mémoire de la table, qui ne doit plus être
+     * utilisée ensuite. Sans effet par défaut : la mémoire des tables sur le
+     * tas est rendue par le ramasse-miettes.
+     */
+    default void release() {
+    }
+
+    /**
+     * @return Le nombre d'états uniques de la table
+     */
+    int size();
+
+    /**
+     * @return true si la table ne contient aucun état
+     */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+}
@@ -0,0 +1,40 @@
+package com.parallelai.export.utilities;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Écriture d'un fichier de dataset, une ligne par état de jeu.
+ *
+ * Implémentations :
+ * - {@link CsvStateWriter} : texte CSV
+ * - {@link BinaryStateWriter} : format binaire compact
+ */
+public interface StateWriter extends Closeable {
+
+    /**
+     * Écrit une ligne complète : plateau, moyenne, somme et occurrences.
+     *
+     * @param black Le bitboard des pions noirs
+     * @param white Le bitboard des pions blancs
+     * @param sum   La somme des résultats
+     * @param count Le nombre d'occurrences
+     * @throws IOException Si l'écriture échoue
+     */
+    void writeRow(long black, long white, double sum, int count) throws IOException;
+
+    /**
+     * Écrit une ligne destinée uniquement à l'entraînement : plateau et
+     * valeur cible (moyenne des résultats). Les formats qui conservent
+     * toujours les compteurs écrivent une ligne complète.
+     *
+     * @param black Le bitboard des pions noirs
+     * @param white Le bitboard des pions blancs
+     * @param sum   La somme des résultats
+     * @param count Le nombre d'occurrences
+     * @throws IOException Si l'écriture échoue
+     */
+    default void writeLabelRow(long black, long white, double sum, int count) throws IOException {
+        writeRow(black, white, sum, count);
+    }
+}
@@ -1,5 +1,7 @@
 package com.parallelai.game;
 
+import java.util.SplittableRandom;
+
 /**
  * Représentation du plateau de jeu d'Othello.
  * Cette classe gère:
@@ -7,20 +9,65 @@ package com.parallelai.game;
  * - La validation des coups
  * - L'application des règles du jeu
  * - Le comptage des pions
+ *
+ * Le plateau est stocké sous forme de bitboards : un entier 64 bits par
+ * couleur, où le bit (ligne * 8 + colonne) est à 1 si la case contient un pion
+ * de cette couleur. La génération des coups et le calcul des pions retournés
+ * se font par décalages et masques, sans parcourir les cases une à une.
+ *
+ * Chaque plateau maintient également une empreinte de Zobrist sur 64 bits,
+ * mise à jour de manière incrémentale à chaque coup, qui sert de clé pour
+ * les tables d'états et les caches.
  */
 public class Board {
     /** Taille du plateau (8x8) */
     private static final int SIZE = 8;
 
-    /** Directions possibles pour retourner les pions */
-    private static final int[][] DIRECTIONS = {
-            { -1, -1 }, { -1, 0 }, { -1, 1 },
-            { 0, -1 }, { 0, 1 },
-            { 1, -1 }, { 1, 0 }, { 1, 1 }
-    };
+    /** Nombre de directions de retournement (horizontales, verticales, diagonales) */
+    private static final int NB_DIRECTIONS = 8;
+
+    /** Masque excluant la colonne 0, appliqué après un décalage vers la droite */
+    private static final long NOT_FIRST_COL = 0xFEFEFEFEFEFEFEFEL;
+
+    /** Masque excluant la colonne 7, appliqué après un décalage vers la gauche */
+    private static final long NOT_LAST_COL = 0x7F7F7F7F7F7F7F7FL;
+
+    /**
+     * Nombre de symétries du plateau (groupe diédral D4 : identité, 3 rotations
+     * et 4 réflexions). Une position et ses 7 images ont la même valeur de jeu.
+     */
+    public static final int NB_SYMMETRIES = 8;
+
+    /**
+     * Clés de Zobrist, indexées par couleur (0 = noir, 1 = blanc) puis par case.
+     * Générées avec une graine fixe pour que les empreintes soient stables d'une
+     * exécution à l'autre.
+     */
+    private static final long[][] ZOBRIST = new long[2][64];
+
+    /**
+     * Clé à appliquer lorsqu'un pion change de couleur sur une case
+     * (ZOBRIST[0][case] ^ ZOBRIST[1][case]).
+     */
+    private static final long[] ZOBRIST_FLIP = new long[64];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5DEECE66DL);
+        for (int square = 0; square < 64; square++) {
+            ZOBRIST[0][square] = random.nextLong();
+            ZOBRIST[1][square] = random.nextLong();
+            ZOBRIST_FLIP[square] = ZOBRIST[0][square] ^ ZOBRIST[1][square];
+        }
+    }
 
-    /** Grille du plateau stockant les pions */
-    private Disc[][] grid;
+    /** Pions noirs (un bit par case) */
+    private long black;
+
+    /** Pions blancs (un bit par case) */
+    private long white;
+
+    /** Empreinte de Zobrist de la position courante */
+    private long hash;
 
     /**
      * Crée un nouveau plateau dans sa configuration initiale:
@@ -28,20 +75,23 @@ public class Board {
      * - Le reste des cases vides
      */
     public Board() {
-        grid = new Disc[SIZE][SIZE];
         initializeBoard();
     }
 
+    /**
+     * Crée un plateau à partir de ses bitboards, sans passer par la
+     * configuration initiale.
+     */
+    private Board(long black, long white, long hash) {
+        this.black = black;
+        this.white = white;
+        this.hash = hash;
+    }
+
     private void initializeBoard() {
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                grid[i][j] = Disc.EMPTY;
-            }
-        }
-        grid[3][3] = Disc.WHITE;
-        grid[3][4] = Disc.BLACK;
-        grid[4][3] = Disc.BLACK;
-        grid[4][4] = Disc.WHITE;
+        white = bit(3, 3) | bit(4, 4);
+        black = bit(3, 4) | bit(4, 3);
+        hash = hashOf(black, white);
     }
 
     /**
@@ -60,7 +110,7 @@ public class Board {
         for (int i = 0; i < SIZE; i++) {
             System.out.print(i + " ");
             for (int j = 0; j < SIZE; j++) {
-                System.out.print(grid[i][j].getSymbol() + " ");
+                System.out.print(getDisc(i, j).getSymbol() + " ");
             }
             System.out.println();
         }
@@ -69,22 +119,20 @@ public class Board {
     /**
      * Vérifie si un coup est valide selon les règles d'Othello.
      * Un coup est valide s'il permet de retourner au moins un pion adverse.
-     * 
+     *
      * @param move  Le coup à vérifier
      * @param color La couleur du joueur qui joue
      * @return true si le coup est valide
      */
     public boolean isValidMove(Move move, Disc color) {
-        if (!isInBounds(move) || grid[move.row][move.col] != Disc.EMPTY) {
+        if (!isInBounds(move) || color == Disc.EMPTY) {
             return false;
         }
-
-        for (int[] direction : DIRECTIONS) {
-            if (wouldFlip(move, direction, color)) {
-                return true;
-            }
+        int square = move.row * SIZE + move.col;
+        if (((black | white) & (1L << square)) != 0) {
+            return false;
         }
-        return false;
+        return computeFlips(square, discs(color), discs(color.opposite())) != 0;
     }
 
     private boolean isInBounds(Move move) {
@@ -93,122 +141,445 @@ public class Board {
     }
 
     /**
-     * Vérifie si des pions seraient retournés dans une direction donnée.
-     * 
-     * @param move      Le coup à vérifier
-     * @param direction La direction à explorer
-     * @param color     La couleur du joueur
-     * @return true si des pions peuvent être retournés
-     */
-    private boolean wouldFlip(Move move, int[] direction, Disc color) {
-        int row = move.row + direction[0];
-        int col = move.col + direction[1];
-        boolean foundOpponent = false;
-
-        while (row >= 0 && row < SIZE && col >= 0 && col < SIZE) {
-            if (grid[row][col] == Disc.EMPTY)
-                return false;
-            if (grid[row][col] == color.opposite()) {
-                foundOpponent = true;
-            } else if (grid[row][col] == color && foundOpponent) {
-                return true;
-            } else {
-                return false;
-            }
-            row += direction[0];
-            col += direction[1];
-        }
-        return false;
+     * Applique un coup sur le plateau en retournant les pions nécessaires.
+     * Renvoie l'enregistrement d'annulation du coup (le masque des pions
+     * retournés), à passer à {@link #undoMove(Move, long)} pour restaurer le
+     * plateau sans allocation.
+     *
+     * @param move Le coup à jouer
+     * @return Le masque des pions retournés par ce coup
+     */
+    public long makeMove(Move move) {
+        return makeMove(move.row * SIZE + move.col, move.color);
     }
 
     /**
-     * Applique un coup sur le plateau en retournant les pions nécessaires.
-     * 
-     * @param move Le coup à jouer
+     * Applique un coup désigné par l'indice de sa case.
+     *
+     * @param square L'indice de la case jouée (ligne * 8 + colonne)
+     * @param color  La couleur du pion posé
+     * @return Le masque des pions retournés par ce coup
      */
-    public void makeMove(Move move) {
-        grid[move.row][move.col] = move.color;
-        for (int[] direction : DIRECTIONS) {
-            flipDiscs(move, direction);
-        }
+    public long makeMove(int square, Disc color) {
+        long player = discs(color);
+        long opponent = discs(color.opposite());
+        long flips = computeFlips(square, player, opponent);
+
+        setDiscs(color, player | flips | (1L << square), opponent & ~flips);
+        hash ^= ZOBRIST[zobristIndex(color)][square] ^ flipKey(flips);
+        return flips;
     }
 
     /**
-     * Retourne les pions dans une direction donnée suite à un coup.
-     * 
-     * @param move      Le coup joué
-     * @param direction La direction où retourner les pions
+     * Annule un coup joué avec {@link #makeMove(Move)} : retire le pion posé et
+     * rend à l'adversaire les pions retournés.
+     * Les coups doivent être annulés dans l'ordre inverse où ils ont été joués,
+     * et seul un coup joué sur une case vide peut être annulé exactement.
+     *
+     * @param move  Le coup à annuler
+     * @param flips Le masque renvoyé par makeMove pour ce coup
      */
-    private void flipDiscs(Move move, int[] direction) {
-        if (!wouldFlip(move, direction, move.color))
-            return;
+    public void undoMove(Move move, long flips) {
+        undoMove(move.row * SIZE + move.col, move.color, flips);
+    }
 
-        int row = move.row + direction[0];
-        int col = move.col + direction[1];
+    /**
+     * Annule un coup désigné par l'indice de sa case.
+     *
+     * @param square L'indice de la case jouée (ligne * 8 + colonne)
+     * @param color  La couleur du pion posé
+     * @param flips  Le masque renvoyé par makeMove pour ce coup
+     */
+    public void undoMove(int square, Disc color, long flips) {
+        long player = discs(color);
+        long opponent = discs(color.opposite());
 
-        while (grid[row][col] == move.color.opposite()) {
-            grid[row][col] = move.color;
-            row += direction[0];
-            col += direction[1];
-        }
+        setDiscs(color, player & ~(flips | (1L << square)), opponent | flips);
+        hash ^= ZOBRIST[zobristIndex(color)][square] ^ flipKey(flips);
     }
 
     /**
      * Vérifie si un joueur a au moins un coup valide disponible.
-     * 
+     *
      * @param color La couleur du joueur à vérifier
      * @return true si le joueur peut jouer
      */
     public boolean hasValidMoves(Disc color) {
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                if (isValidMove(new Move(i, j, color), color)) {
-                    return true;
-                }
-            }
+        return getValidMoves(color) != 0;
+    }
+
+    /**
+     * Renvoie l'ensemble des coups valides d'un joueur sous forme de masque :
+     * le bit (ligne * 8 + colonne) est à 1 si la case est jouable.
+     * N'alloue aucun objet.
+     *
+     * @param color La couleur du joueur
+     * @return Le masque des cases jouables (0 si aucun coup possible)
+     */
+    public long getValidMoves(Disc color) {
+        if (color == Disc.EMPTY) {
+            return 0;
+        }
+        return computeMoves(discs(color), discs(color.opposite()));
+    }
+
+    /**
+     * Remplit un tableau fourni par l'appelant avec les indices des cases
+     * jouables (ligne * 8 + colonne), dans l'ordre croissant.
+     * N'alloue aucun objet.
+     *
+     * @param color   La couleur du joueur
+     * @param squares Tableau de destination, d'au moins 64 cases pour couvrir
+     *                tous les cas
+     * @return Le nombre de coups valides écrits dans le tableau
+     */
+    public int getValidMoves(Disc color, int[] squares) {
+        long moves = getValidMoves(color);
+        int count = 0;
+        while (moves != 0) {
+            squares[count++] = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
         }
-        return false;
+        return count;
     }
 
     /**
      * Compte le nombre de pions d'une couleur donnée sur le plateau.
-     * 
+     *
      * @param color La couleur des pions à compter
      * @return Le nombre de pions de cette couleur
      */
     public int getDiscCount(Disc color) {
-        int count = 0;
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                if (grid[i][j] == color) {
-                    count++;
-                }
+        return Long.bitCount(discs(color));
+    }
+
+    /**
+     * Renvoie le contenu d'une case du plateau.
+     *
+     * @param row Numéro de ligne (0-7)
+     * @param col Numéro de colonne (0-7)
+     * @return Le pion présent sur la case, ou EMPTY si elle est vide
+     */
+    public Disc getDisc(int row, int col) {
+        long mask = bit(row, col);
+        if ((black & mask) != 0) {
+            return Disc.BLACK;
+        }
+        if ((white & mask) != 0) {
+            return Disc.WHITE;
+        }
+        return Disc.EMPTY;
+    }
+
+    /**
+     * Renvoie le bitboard d'une couleur : le bit (ligne * 8 + colonne) est à 1
+     * si la case contient un pion de cette couleur.
+     *
+     * @param color La couleur demandée
+     * @return Le bitboard de la couleur, ou celui des cases vides pour EMPTY
+     */
+    public long getBitboard(Disc color) {
+        return discs(color);
+    }
+
+    /**
+     * Renvoie l'empreinte de Zobrist de la position courante.
+     * Deux plateaux identiques ont toujours la même empreinte ; elle est
+     * maintenue de manière incrémentale par makeMove et undoMove.
+     *
+     * @return L'empreinte 64 bits de la position
+     */
+    public long hash() {
+        return hash;
+    }
+
+    /**
+     * Calcule l'empreinte de Zobrist d'une position donnée par ses bitboards,
+     * identique à celle que renverrait {@link #hash()} pour ce plateau.
+     *
+     * @param black Bitboard des pions noirs
+     * @param white Bitboard des pions blancs
+     * @return L'empreinte 64 bits de la position
+     */
+    public static long hashOf(long black, long white) {
+        long h = 0;
+        for (long b = black; b != 0; b &= b - 1) {
+            h ^= ZOBRIST[0][Long.numberOfTrailingZeros(b)];
+        }
+        for (long w = white; w != 0; w &= w - 1) {
+            h ^= ZOBRIST[1][Long.numberOfTrailingZeros(w)];
+        }
+        return h;
+    }
+
+    /**
+     * Applique une symétrie du plateau à un bitboard.
+     * Les bits de l'indice de symétrie se combinent : 1 = miroir gauche/droite,
+     * 2 = miroir haut/bas, 4 = transposition (échange lignes et colonnes),
+     * appliquée en premier. L'indice 0 est l'identité.
+     *
+     * @param bitboard Le bitboard à transformer
+     * @param symmetry L'indice de la symétrie (0 à NB_SYMMETRIES - 1)
+     * @return Le bitboard transformé
+     */
+    public static long transform(long bitboard, int symmetry) {
+        long x = (symmetry & 4) != 0 ? transpose(bitboard) : bitboard;
+        if ((symmetry & 1) != 0) {
+            x = mirrorColumns(x);
+        }
+        if ((symmetry & 2) != 0) {
+            x = Long.reverseBytes(x); // Une ligne par octet : inverse l'ordre des lignes
+        }
+        return x;
+    }
+
+    /**
+     * Renvoie l'indice de la symétrie qui amène ce plateau dans sa forme
+     * canonique : parmi les 8 images de la position, celle dont le couple
+     * (noirs, blancs) est le plus petit. Toutes les images d'une même position
+     * ont ainsi la même forme canonique.
+     *
+     * @return L'indice de symétrie à passer à {@link #transform(long, int)}
+     */
+    public int canonicalSymmetry() {
+        return canonicalSymmetry(black, white);
+    }
+
+    /**
+     * Variante de {@link #canonicalSymmetry()} travaillant directement sur
+     * les bitboards, sans instancier de plateau.
+     *
+     * @param black Le bitboard des pions noirs
+     * @param white Le bitboard des pions blancs
+     * @return L'indice de symétrie à passer à {@link #transform(long, int)}
+     */
+    public static int canonicalSymmetry(long black, long white) {
+        int best = 0;
+        long bestBlack = black;
+        long bestWhite = white;
+        for (int symmetry = 1; symmetry < NB_SYMMETRIES; symmetry++) {
+            long b = transform(black, symmetry);
+            int cmp = Long.compareUnsigned(b, bestBlack);
+            if (cmp > 0) {
+                continue;
+            }
+            long w = transform(white, symmetry);
+            if (cmp < 0 || Long.compareUnsigned(w, bestWhite) < 0) {
+                best = symmetry;
+                bestBlack = b;
+                bestWhite = w;
             }
         }
-        return count;
+        return best;
+    }
+
+    /**
+     * Renvoie l'empreinte de Zobrist de la forme canonique du plateau,
+     * identique pour toutes les images de la position par rotation ou
+     * réflexion.
+     *
+     * @return L'empreinte 64 bits de la forme canonique
+     */
+    public long canonicalHash() {
+        int symmetry = canonicalSymmetry();
+        return hashOf(transform(black, symmetry), transform(white, symmetry));
+    }
+
+    /**
+     * Crée l'image de ce plateau par une symétrie.
+     *
+     * @param symmetry L'indice de la symétrie (0 à NB_SYMMETRIES - 1)
+     * @return Un nouveau plateau transformé
+     */
+    public Board transformed(int symmetry) {
+        long b = transform(black, symmetry);
+        long w = transform(white, symmetry);
+        return new Board(b, w, hashOf(b, w));
     }
 
     /**
      * Renvoie la grille représentant le plateau.
-     * 
+     * La grille est reconstruite à partir des bitboards : la modifier n'a
+     * aucun effet sur le plateau.
+     *
      * @return Le tableau 2D contenant les pions
      */
     public Disc[][] getGrid() {
+        Disc[][] grid = new Disc[SIZE][SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                grid[i][j] = getDisc(i, j);
+            }
+        }
         return grid;
     }
 
     /**
      * Crée une copie profonde du plateau actuel
-     * 
+     *
      * @return Une nouvelle instance de Board avec le même état
      */
     public Board copy() {
-        Board newBoard = new Board();
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                newBoard.grid[i][j] = this.grid[i][j];
+        return new Board(black, white, hash);
+    }
+
+    /**
+     * Deux plateaux sont égaux s'ils portent les mêmes pions sur les mêmes cases.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Board)) {
+            return false;
+        }
+        Board other = (Board) o;
+        return black == other.black && white == other.white;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hash);
+    }
+
+    /**
+     * Combine les clés de Zobrist des pions retournés.
+     */
+    private static long flipKey(long flips) {
+        long key = 0;
+        for (long f = flips; f != 0; f &= f - 1) {
+            key ^= ZOBRIST_FLIP[Long.numberOfTrailingZeros(f)];
+        }
+        return key;
+    }
+
+    private static int zobristIndex(Disc color) {
+        return color == Disc.BLACK ? 0 : 1;
+    }
+
+    /**
+     * Met à jour les bitboards du joueur et de son adversaire.
+     */
+    private void setDiscs(Disc color, long player, long opponent) {
+        if (color == Disc.BLACK) {
+            black = player;
+            white = opponent;
+        } else {
+            white = player;
+            black = opponent;
+        }
+    }
+
+    /**
+     * Renvoie le bitboard associé à une couleur.
+     */
+    private long discs(Disc color) {
+        return switch (color) {
+            case BLACK -> black;
+            case WHITE -> white;
+            default -> ~(black | white);
+        };
+    }
+
+    private static long bit(int row, int col) {
+        return 1L << (row * SIZE + col);
+    }
+
+    /**
+     * Échange les colonnes 0-7, 1-6, 2-5 et 3-4 (miroir gauche/droite).
+     */
+    private static long mirrorColumns(long x) {
+        x = ((x >>> 1) & 0x5555555555555555L) | ((x & 0x5555555555555555L) << 1);
+        x = ((x >>> 2) & 0x3333333333333333L) | ((x & 0x3333333333333333L) << 2);
+        x = ((x >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((x & 0x0F0F0F0F0F0F0F0FL) << 4);
+        return x;
+    }
+
+    /**
+     * Transpose le plateau : la case (ligne, colonne) passe en (colonne, ligne).
+     * Échange les blocs hors diagonale par trois "delta swaps" successifs.
+     */
+    private static long transpose(long x) {
+        long t;
+        t = 0x0F0F0F0F00000000L & (x ^ (x << 28));
+        x ^= t ^ (t >>> 28);
+        t = 0x3333000033330000L & (x ^ (x << 14));
+        x ^= t ^ (t >>> 14);
+        t = 0x5500550055005500L & (x ^ (x << 7));
+        x ^= t ^ (t >>> 7);
+        return x;
+    }
+
+    /**
+     * Décale un bitboard d'une case dans une direction donnée, en éliminant
+     * les bits qui sortiraient du plateau par les bords gauche ou droit.
+     *
+     * @param b         Le bitboard à décaler
+     * @param direction L'indice de la direction (0-7)
+     * @return Le bitboard décalé
+     */
+    private static long shift(long b, int direction) {
+        return switch (direction) {
+            case 0 -> b >>> 8; // Haut
+            case 1 -> b << 8; // Bas
+            case 2 -> (b << 1) & NOT_FIRST_COL; // Droite
+            case 3 -> (b >>> 1) & NOT_LAST_COL; // Gauche
+            case 4 -> (b >>> 7) & NOT_FIRST_COL; // Haut-droite
+            case 5 -> (b >>> 9) & NOT_LAST_COL; // Haut-gauche
+            case 6 -> (b << 9) & NOT_FIRST_COL; // Bas-droite
+            default -> (b << 7) & NOT_LAST_COL; // Bas-gauche
+        };
+    }
+
+    /**
+     * Calcule l'ensemble des cases jouables pour un joueur.
+     * Pour chaque direction, propage les chaînes de pions adverses partant des
+     * pions du joueur ; une case vide au bout d'une chaîne est jouable.
+     *
+     * @param player   Bitboard du joueur
+     * @param opponent Bitboard de l'adversaire
+     * @return Le bitboard des cases jouables
+     */
+    private static long computeMoves(long player, long opponent) {
+        long empty = ~(player | opponent);
+        long moves = 0;
+        for (int d = 0; d < NB_DIRECTIONS; d++) {
+            long x = shift(player, d) & opponent;
+            // Une chaîne compte au plus 6 pions adverses entre deux cases
+            x |= shift(x, d) & opponent;
+            x |= shift(x, d) & opponent;
+            x |= shift(x, d) & opponent;
+            x |= shift(x, d) & opponent;
+            x |= shift(x, d) & opponent;
+            moves |= shift(x, d) & empty;
+        }
+        return moves;
+    }
+
+    /**
+     * Calcule les pions retournés par un coup joué sur une case.
+     *
+     * @param square   L'indice de la case jouée (ligne * 8 + colonne)
+     * @param player   Bitboard du joueur
+     * @param opponent Bitboard de l'adversaire
+     * @return Le bitboard des pions adverses à retourner (0 si le coup est
+     *         invalide)
+     */
+    private static long computeFlips(int square, long player, long opponent) {
+        long move = 1L << square;
+        long flips = 0;
+        for (int d = 0; d < NB_DIRECTIONS; d++) {
+            long line = 0;
+            long x = shift(move, d);
+            while ((x & opponent) != 0) {
+                line |= x;
+                x = shift(x, d);
+            }
+            if ((x & player) != 0) {
+                flips |= line;
             }
         }
-        return newBoard;
+        return flips;
     }
 }
@@ -9,6 +9,21 @@ package com.parallelai.game;
  * après création.
  */
 public class Move {
+    /**
+     * Table des coups pré-alloués, indexée par couleur puis par case
+     * (ligne * 8 + colonne). Les coups étant immuables, une même instance peut
+     * être partagée entre toutes les parties et tous les threads.
+     */
+    private static final Move[][] CACHE = new Move[Disc.values().length][64];
+
+    static {
+        for (Disc color : Disc.values()) {
+            for (int square = 0; square < 64; square++) {
+                CACHE[color.ordinal()][square] = new Move(square / 8, square % 8, color);
+            }
+        }
+    }
+
     /** Numéro de ligne où placer le pion (0-7) */
     public final int row;
 
@@ -30,4 +45,54 @@ public class Move {
         this.col = col;
         this.color = color;
     }
+
+    /**
+     * Renvoie le coup pré-alloué correspondant à une case et une couleur.
+     * N'alloue aucun objet.
+     *
+     * @param square Indice de la case (ligne * 8 + colonne, 0-63)
+     * @param color  Couleur du pion à placer
+     * @return Le coup partagé correspondant
+     */
+    public static Move of(int square, Disc color) {
+        return CACHE[color.ordinal()][square];
+    }
+
+    /**
+     * Renvoie le coup pré-alloué correspondant à une position et une couleur.
+     *
+     * @param row   Numéro de ligne (0-7)
+     * @param col   Numéro de colonne (0-7)
+     * @param color Couleur du pion à placer
+     * @return Le coup partagé correspondant
+     */
+    public static Move of(int row, int col, Disc color) {
+        return CACHE[color.ordinal()][row * 8 + col];
+    }
+
+    /**
+     * Renvoie les coups pré-alloués des cases d'un masque, par exemple celui
+     * de {@link Board#getValidMoves(Disc)}.
+     *
+     * @param squares Masque des cases (bit ligne * 8 + colonne)
+     * @param color   Couleur du pion à placer
+     * @return Les coups, dans l'ordre croissant des cases
+     */
+    public static Move[] allOf(long squares, Disc color) {
+        Move[] moves = new Move[Long.bitCount(squares)];
+        for (int i = 0; squares != 0; i++) {
+            moves[i] = CACHE[color.ordinal()][Long.numberOfTrailingZeros(squares)];
+            squares &= squares - 1;
+        }
+        return moves;
+    }
+
+    /**
+     * Renvoie l'indice de la case visée par ce coup.
+     *
+     * @return ligne * 8 + colonne
+     */
+    public int square() {
+        return row * 8 + col;
+    }
 }
@@ -0,0 +1,88 @@
+package com.parallelai.models.utils;
+
+import com.parallelai.game.Board;
+import com.parallelai.game.Disc;
+import com.parallelai.game.Move;
+
+/**
+ * Encodage d'un plateau en entrée de réseau de neurones : une valeur par
+ * case, dans l'ordre ligne * 8 + colonne. Vide = 0, Noir = 1, Blanc = -1,
+ * comme pour les données d'entraînement.
+ */
+public final class BoardFeatures {
+    /** Nombre de valeurs par plateau */
+    public static final int CELLS = 64;
+
+    private BoardFeatures() {
+    }
+
+    /**
+     * Écrit les cases d'un plateau dans un tableau, à partir de offset.
+     *
+     * @param board    Le plateau à encoder
+     * @param features Le tableau destination
+     * @param offset   L'indice de la première case
+     */
+    public static void write(Board board, float[] features, int offset) {
+        long black = board.getBitboard(Disc.BLACK);
+        long white = board.getBitboard(Disc.WHITE);
+        for (int i = 0; i < CELLS; i++) {
+            features[offset + i] = 0f;
+        }
+        for (long bits = black; bits != 0; bits &= bits - 1) {
+            features[offset + Long.numberOfTrailingZeros(bits)] = 1f;
+        }
+        for (long bits = white; bits != 0; bits &= bits - 1) {
+            features[offset + Long.numberOfTrailingZeros(bits)] = -1f;
+        }
+    }
+
+    /**
+     * Encode les plateaux obtenus après chacun des coups, joués puis annulés
+     * sur le plateau sans le copier. Le plateau est donc modifié pendant
+     * l'appel et restauré à la sortie ; il ne doit pas être utilisé par un
+     * autre thread entre-temps.
+     *
+     * @param board Le plateau courant
+     * @param moves Les coups à jouer, tous jouables sur ce plateau
+     * @return Les plateaux encodés, CELLS valeurs par coup
+     * @throws IllegalArgumentException Si un coup n'est pas jouable
+     */
+    public static float[] afterMoves(Board board, Move[] moves) {
+        float[] features = new float[moves.length * CELLS];
+        for (int i = 0; i < moves.length; i++) {
+            long flips = play(board, moves[i]);
+            try {
+                write(board, features, i * CELLS);
+            } finally {
+                board.undoMove(moves[i], flips);
+            }
+        }
+        return features;
+    }
+
+    /**
+     * Joue un coup à évaluer sur le plateau. Seul un coup jouable est
+     * exactement annulable par {@link Board#undoMove(Move, long)} : un coup
+     * sur une case occupée, ou qui ne retourne aucun pion, est refusé et le
+     * plateau reste inchangé.
+     *
+     * @param board Le plateau courant
+     * @param move  Le coup à jouer
+     * @return Le masque des pions retournés, à passer à undoMove
+     * @throws IllegalArgumentException Si le coup n'est pas jouable
+     */
+    static long play(Board board, Move move) {
+        if (move.row < 0 || move.row >= 8 || move.col < 0 || move.col >= 8 || move.color == Disc.EMPTY
+                || board.getDisc(move.row, move.col) != Disc.EMPTY) {
+            throw new IllegalArgumentException("Coup non jouable : (" + move.row + ", " + move.col + ")");
+        }
+        long flips = board.makeMove(move);
+        if (flips == 0) {
+            // Case vide : l'annulation est exacte
+            board.undoMove(move, flips);
+            throw new IllegalArgumentException("Coup non jouable : (" + move.row + ", " + move.col + ")");
+        }
+        return flips;
+    }
+}
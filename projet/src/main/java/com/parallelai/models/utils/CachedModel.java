@@ -0,0 +1,139 @@
+package com.parallelai.models.utils;
+
+import com.parallelai.game.Board;
+import com.parallelai.game.Disc;
+import com.parallelai.game.Move;
+
+/**
+ * Modèle qui consulte un {@link EvaluationCache} avant d'évaluer les coups.
+ *
+ * Chaque coup est joué puis annulé sur le plateau pour obtenir l'empreinte
+ * de la position résultante. Seuls les coups absents du cache sont transmis
+ * au modèle enveloppé, en un seul appel, et leurs scores sont ajoutés au
+ * cache. Le modèle enveloppé doit être déterministe : deux évaluations
+ * d'une même position doivent donner le même score. Une évaluation en
+ * échec lève une exception sans rien ajouter au cache.
+ */
+public class CachedModel implements Model {
+    private final Model model;
+    private final EvaluationCache cache;
+    private final long modelId;
+    private final boolean ownsModel;
+
+    /**
+     * @param model Le modèle à mettre en cache
+     * @param cache Le cache, éventuellement partagé avec d'autres modèles
+     */
+    public CachedModel(Model model, EvaluationCache cache) {
+        this(model, model, cache, false);
+    }
+
+    /**
+     * @param model     Le modèle interrogé en cas de défaut de cache
+     * @param identity  Le modèle dont les scores sont mis en cache
+     * @param cache     Le cache
+     * @param ownsModel Vrai si le modèle interrogé est fermé avec celui-ci
+     */
+    private CachedModel(Model model, Model identity, EvaluationCache cache, boolean ownsModel) {
+        this.model = model;
+        this.cache = cache;
+        this.modelId = cache.modelId(identity);
+        this.ownsModel = ownsModel;
+    }
+
+    /**
+     * Partage un modèle entre plusieurs threads de jeu, comme
+     * {@link InferenceBroker#share}, en plaçant les modèles à réseau de
+     * neurones derrière le cache. Les autres modèles, pas forcément
+     * déterministes, ne sont pas mis en cache.
+     *
+     * @param model   Le modèle à partager
+     * @param clients Le nombre de threads qui l'attendront en même temps,
+     *                voir {@link InferenceBroker#clientsPerPlayer}
+     * @param cache   Le cache des évaluations
+     * @return Le modèle à utiliser : s'il diffère du modèle donné, il est à
+     *         fermer en fin d'utilisation
+     */
+    public static Model share(Model model, int clients, EvaluationCache cache) {
+        Model shared = InferenceBroker.share(model, clients);
+        if (!(model instanceof NeuralModel)) {
+            return shared;
+        }
+        return new CachedModel(shared, model, cache, shared != model);
+    }
+
+    @Override
+    public boolean evaluatesInBatches() {
+        return true;
+    }
+
+    @Override
+    public double evaluateMove(Move move, Board board) {
+        return evaluateMoves(board, new Move[] { move })[0];
+    }
+
+    @Override
+    public double[] evaluateMoves(Board board, Move[] moves) {
+        double[] scores = new double[moves.length];
+        int[] missing = new int[moves.length];
+        long[] positions = new long[moves.length * 3];
+        int nbMissing = 0;
+
+        for (int i = 0; i < moves.length; i++) {
+            long flips = BoardFeatures.play(board, moves[i]);
+            try {
+                long black = board.getBitboard(Disc.BLACK);
+                long white = board.getBitboard(Disc.WHITE);
+                long hash = board.hash();
+                double score = cache.get(modelId, hash, black, white);
+                if (Double.isNaN(score)) {
+                    positions[nbMissing * 3] = hash;
+                    positions[nbMissing * 3 + 1] = black;
+                    positions[nbMissing * 3 + 2] = white;
+                    missing[nbMissing++] = i;
+                } else {
+                    scores[i] = score;
+                }
+            } finally {
+                board.undoMove(moves[i], flips);
+            }
+        }
+        if (nbMissing == 0) {
+            return scores;
+        }
+
+        // Évalue en un seul appel les coups absents du cache
+        Move[] toEvaluate = new Move[nbMissing];
+        for (int k = 0; k < nbMissing; k++) {
+            toEvaluate[k] = moves[missing[k]];
+        }
+        double[] evaluated = model.evaluateMoves(board, toEvaluate);
+        for (int k = 0; k < nbMissing; k++) {
+            scores[missing[k]] = evaluated[k];
+            cache.put(modelId, positions[k * 3], positions[k * 3 + 1], positions[k * 3 + 2], evaluated[k]);
+        }
+        return scores;
+    }
+
+    /**
+     * @return Le cache des évaluations
+     */
+    public EvaluationCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Ferme le modèle interrogé s'il a été créé pour ce partage.
+     */
+    @Override
+    public void close() {
+        if (ownsModel) {
+            model.close();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return model.getName();
+    }
+}
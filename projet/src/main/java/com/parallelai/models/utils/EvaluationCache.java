@@ -0,0 +1,256 @@
+package com.parallelai.models.utils;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache borné des évaluations de positions, partagé par tous les threads
+ * de jeu et éventuellement par plusieurs modèles.
+ *
+ * Une entrée est rangée sous l'empreinte Zobrist de la position obtenue
+ * après le coup, mélangée à l'identifiant du modèle qui l'a évaluée. Elle
+ * garde aussi la position complète et l'identifiant : une collision
+ * d'empreintes est traitée comme un défaut de cache.
+ *
+ * Le cache est découpé en segments choisis par les bits de poids fort de
+ * la clé, chacun protégé par son propre verrou et borné à sa part de la
+ * capacité. Un segment plein évince son entrée la moins récemment utilisée
+ * (LRU) ou la plus ancienne (FIFO).
+ */
+public class EvaluationCache {
+    /** Politique d'éviction d'un segment plein */
+    public enum Eviction {
+        /** Évince l'entrée la moins récemment lue ou écrite */
+        LRU,
+        /** Évince l'entrée la plus anciennement écrite */
+        FIFO
+    }
+
+    /** Nombre d'entrées par défaut (environ 25 Mo) */
+    public static final int DEFAULT_CAPACITY = 1 << 18;
+
+    /** Nombre de bits de la clé utilisés pour choisir le segment */
+    private static final int SEGMENT_BITS = 6;
+
+    /** Nombre de segments du cache */
+    private static final int NB_SEGMENTS = 1 << SEGMENT_BITS;
+
+    /** Constante de mélange de l'identifiant du modèle (nombre d'or) */
+    private static final long MODEL_MIX = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Évaluation d'une position par un modèle.
+     */
+    private static final class Entry {
+        final long modelId;
+        final long black;
+        final long white;
+        final double score;
+
+        Entry(long modelId, long black, long white, double score) {
+            this.modelId = modelId;
+            this.black = black;
+            this.white = white;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Segment du cache : table ordonnée selon la politique d'éviction, qui
+     * retire son entrée la plus ancienne au-delà de sa capacité.
+     */
+    private final class Segment extends LinkedHashMap<Long, Entry> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        Segment(int capacity, boolean accessOrder) {
+            super(16, 0.75f, accessOrder);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private final Segment[] segments;
+    private final int capacity;
+    private final Eviction eviction;
+    private final Map<Model, Long> modelIds = new IdentityHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Crée un cache LRU de capacité {@link #DEFAULT_CAPACITY}.
+     */
+    public EvaluationCache() {
+        this(DEFAULT_CAPACITY, Eviction.LRU);
+    }
+
+    /**
+     * @param capacity Le nombre maximal d'entrées, réparti entre les segments
+     * @param eviction La politique d'éviction des segments pleins
+     */
+    public EvaluationCache(int capacity, Eviction eviction) {
+        int perSegment = Math.max(1, (capacity + NB_SEGMENTS - 1) / NB_SEGMENTS);
+        this.capacity = perSegment * NB_SEGMENTS;
+        this.eviction = eviction;
+        this.segments = new Segment[NB_SEGMENTS];
+        for (int i = 0; i < NB_SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment, eviction == Eviction.LRU);
+        }
+    }
+
+    /**
+     * Renvoie l'identifiant d'un modèle dans ce cache, attribué à sa première
+     * demande. Deux modèles distincts n'ont jamais le même identifiant.
+     *
+     * @param model Le modèle évaluateur
+     * @return L'identifiant du modèle
+     */
+    public synchronized long modelId(Model model) {
+        return modelIds.computeIfAbsent(model, m -> (long) modelIds.size() + 1);
+    }
+
+    /**
+     * Cherche l'évaluation d'une position par un modèle.
+     *
+     * @param modelId L'identifiant du modèle, donné par {@link #modelId}
+     * @param hash    L'empreinte Zobrist de la position
+     * @param black   Les pions noirs de la position
+     * @param white   Les pions blancs de la position
+     * @return Le score, ou NaN si la position n'est pas en cache
+     */
+    public double get(long modelId, long hash, long black, long white) {
+        long key = key(modelId, hash);
+        Segment segment = segment(key);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+        }
+        if (entry != null && entry.modelId == modelId && entry.black == black && entry.white == white) {
+            hits.increment();
+            return entry.score;
+        }
+        misses.increment();
+        return Double.NaN;
+    }
+
+    /**
+     * Enregistre l'évaluation d'une position par un modèle.
+     *
+     * @param modelId L'identifiant du modèle, donné par {@link #modelId}
+     * @param hash    L'empreinte Zobrist de la position
+     * @param black   Les pions noirs de la position
+     * @param white   Les pions blancs de la position
+     * @param score   Le score du modèle
+     */
+    public void put(long modelId, long hash, long black, long white, double score) {
+        long key = key(modelId, hash);
+        Segment segment = segment(key);
+        Entry entry = new Entry(modelId, black, white, score);
+        synchronized (segment) {
+            segment.put(key, entry);
+        }
+    }
+
+    private static long key(long modelId, long hash) {
+        return hash ^ (modelId * MODEL_MIX);
+    }
+
+    private Segment segment(long key) {
+        return segments[(int) (key >>> (64 - SEGMENT_BITS))];
+    }
+
+    /**
+     * Vide le cache et remet ses compteurs à zéro.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    /**
+     * @return Le nombre d'entrées en cache
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return Le nombre maximal d'entrées
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return La politique d'éviction
+     */
+    public Eviction getEviction() {
+        return eviction;
+    }
+
+    /**
+     * @return Le nombre de recherches ayant trouvé leur position
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Le nombre de recherches n'ayant pas trouvé leur position
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Le nombre d'entrées évincées faute de place
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return La part des recherches ayant trouvé leur position, entre 0 et 1
+     */
+    public double getHitRate() {
+        long found = getHits();
+        long total = found + getMisses();
+        return total == 0 ? 0 : (double) found / total;
+    }
+
+    /**
+     * Affiche le taux de succès et le remplissage du cache, s'il a servi.
+     */
+    public void printStats() {
+        long total = getHits() + getMisses();
+        if (total == 0) {
+            return;
+        }
+        System.out.println(String.format("Cache d'évaluation : %.1f%% de succès sur %d recherches | %d/%d entrées | %d évictions",
+                getHitRate() * 100, total, size(), capacity, getEvictions()));
+    }
+}
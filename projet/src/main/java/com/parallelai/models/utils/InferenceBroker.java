@@ -0,0 +1,283 @@
+package com.parallelai.models.utils;
+
+import com.parallelai.game.Board;
+import com.parallelai.game.Move;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regroupe les évaluations demandées par plusieurs parties jouées en
+ * parallèle pour les soumettre au réseau en grands lots.
+ *
+ * Chaque thread client encode ses plateaux puis dépose une requête et
+ * attend son résultat. Des threads dédiés (workers) forment chacun un lot
+ * avec les requêtes en attente et l'évaluent en un seul appel au réseau. Un
+ * lot part dès qu'il atteint maxBatch plateaux, dès qu'il regroupe la part
+ * de clients attendue par worker, ou au plus tard maxLatency après
+ * l'arrivée de sa première requête.
+ *
+ * Avec un seul worker, le réseau n'est utilisé que par son thread. Avec
+ * plusieurs, le broker évalue à travers un {@link PooledModel} : chaque
+ * worker dispose de sa propre copie du réseau et les lots sont évalués en
+ * parallèle.
+ */
+public class InferenceBroker implements Model {
+    /** Nombre de plateaux au-delà duquel un lot part sans attendre */
+    public static final int DEFAULT_MAX_BATCH = 512;
+
+    /** Attente maximale d'un lot incomplet, en microsecondes */
+    public static final long DEFAULT_MAX_LATENCY_MICROS = 1000;
+
+    /** Nombre de clients regroupés par worker lors du partage d'un modèle */
+    public static final int DEFAULT_CLIENTS_PER_WORKER = 4;
+
+    /** Requête d'un client : plateaux encodés et résultat attendu */
+    private static final class Request {
+        final float[] features;
+        final int count;
+        final CompletableFuture<double[]> result = new CompletableFuture<>();
+
+        Request(float[] features, int count) {
+            this.features = features;
+            this.count = count;
+        }
+    }
+
+    private final NeuralModel model;
+    private final boolean pooled;
+    private final int maxBatch;
+    private final long maxLatencyNanos;
+    private final int clientsPerWorker;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread[] dispatchers;
+    private volatile boolean closed;
+
+    /**
+     * @param model            Le modèle à réseau de neurones à partager
+     * @param maxBatch         Le nombre de plateaux au-delà duquel un lot part
+     * @param maxLatencyMicros L'attente maximale d'un lot incomplet, en
+     *                         microsecondes
+     * @param expectedClients  Le nombre de threads qui attendent ce modèle en
+     *                         même temps : un lot part sans attendre
+     *                         lorsqu'il regroupe une requête de chacun des
+     *                         clients de son worker
+     * @param workers          Le nombre de threads d'évaluation, chacun avec
+     *                         sa copie du réseau
+     */
+    public InferenceBroker(NeuralModel model, int maxBatch, long maxLatencyMicros, int expectedClients,
+            int workers) {
+        workers = Math.max(1, workers);
+        this.pooled = workers > 1;
+        this.model = pooled ? new PooledModel(model, workers) : model;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxLatencyNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, maxLatencyMicros));
+        this.clientsPerWorker = Math.max(1, (expectedClients + workers - 1) / workers);
+        this.dispatchers = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            dispatchers[i] = new Thread(this::dispatch, "inference-broker-" + model.getName() + "-" + i);
+            dispatchers[i].setDaemon(true);
+            dispatchers[i].start();
+        }
+    }
+
+    /**
+     * Nombre de threads de jeu qui attendent en même temps l'un des deux
+     * joueurs d'une partie : les joueurs jouant à tour de rôle, chaque
+     * modèle n'est attendu que par environ la moitié des threads. C'est le
+     * nombre de clients à donner à {@link #share} pour chaque joueur ; avec
+     * le nombre total de threads, les lots attendraient des requêtes qui
+     * ne viennent pas jusqu'à l'échéance maxLatency.
+     *
+     * @param gameThreads Le nombre de threads de jeu
+     * @return Le nombre de clients de chaque modèle
+     */
+    public static int clientsPerPlayer(int gameThreads) {
+        return Math.max(1, (gameThreads + 1) / 2);
+    }
+
+    /**
+     * Partage un modèle entre plusieurs threads de jeu : les modèles à réseau
+     * de neurones sont placés derrière un broker, avec un worker pour
+     * {@link #DEFAULT_CLIENTS_PER_WORKER} clients dans la limite des
+     * processeurs disponibles. Les autres modèles sont renvoyés tels quels.
+     *
+     * @param model   Le modèle à partager
+     * @param clients Le nombre de threads qui l'attendront en même temps
+     * @return Le modèle à utiliser : s'il diffère du modèle donné, c'est un
+     *         broker à fermer en fin d'utilisation
+     */
+    public static Model share(Model model, int clients) {
+        if (clients > 1 && model instanceof NeuralModel) {
+            int workers = Math.min(Runtime.getRuntime().availableProcessors(),
+                    (clients + DEFAULT_CLIENTS_PER_WORKER - 1) / DEFAULT_CLIENTS_PER_WORKER);
+            return new InferenceBroker((NeuralModel) model, DEFAULT_MAX_BATCH, DEFAULT_MAX_LATENCY_MICROS, clients,
+                    workers);
+        }
+        return model;
+    }
+
+    @Override
+    public boolean evaluatesInBatches() {
+        return true;
+    }
+
+    @Override
+    public double evaluateMove(Move move, Board board) {
+        return evaluateMoves(board, new Move[] { move })[0];
+    }
+
+    /**
+     * Encode les plateaux dans le thread appelant, puis attend qu'un worker
+     * les ait évalués avec ceux des autres parties.
+     *
+     * @throws IllegalStateException Si l'évaluation du lot échoue ou si le
+     *                               broker est fermé pendant l'attente
+     */
+    @Override
+    public double[] evaluateMoves(Board board, Move[] moves) {
+        if (moves.length == 0) {
+            return new double[0];
+        }
+        float[] features = BoardFeatures.afterMoves(board, moves);
+        if (closed) {
+            return model.evaluateBoards(features, moves.length);
+        }
+
+        Request request = new Request(features, moves.length);
+        queue.add(request);
+        if (closed) {
+            failPending();
+        }
+        try {
+            return request.result.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IllegalStateException) {
+                throw (IllegalStateException) cause;
+            }
+            throw new IllegalStateException("Erreur lors de l'évaluation des coups : " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Boucle d'un worker du broker : forme et évalue les lots jusqu'à la
+     * fermeture.
+     */
+    private void dispatch() {
+        List<Request> batch = new ArrayList<>();
+        try {
+            while (!closed) {
+                Request first = queue.take();
+                batch.add(first);
+                int boards = first.count;
+
+                // Complète le lot avec les requêtes arrivées avant l'échéance
+                long deadline = System.nanoTime() + maxLatencyNanos;
+                while (boards < maxBatch && batch.size() < clientsPerWorker) {
+                    Request next = queue.poll();
+                    if (next == null) {
+                        long wait = deadline - System.nanoTime();
+                        if (wait <= 0) {
+                            break;
+                        }
+                        next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                    }
+                    batch.add(next);
+                    boards += next.count;
+                }
+
+                evaluate(batch, boards);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // Fermeture du broker
+        }
+        for (Request request : batch) {
+            request.result.completeExceptionally(new IllegalStateException("Broker d'inférence fermé"));
+        }
+        failPending();
+    }
+
+    /**
+     * Évalue un lot en un seul appel au réseau et répartit les scores entre
+     * les requêtes.
+     */
+    private void evaluate(List<Request> batch, int boards) {
+        float[] features;
+        if (batch.size() == 1) {
+            features = batch.get(0).features;
+        } else {
+            features = new float[boards * BoardFeatures.CELLS];
+            int offset = 0;
+            for (Request request : batch) {
+                System.arraycopy(request.features, 0, features, offset, request.features.length);
+                offset += request.features.length;
+            }
+        }
+
+        double[] scores;
+        try {
+            scores = model.evaluateBoards(features, boards);
+        } catch (RuntimeException e) {
+            for (Request request : batch) {
+                request.result.completeExceptionally(e);
+            }
+            return;
+        }
+
+        int offset = 0;
+        for (Request request : batch) {
+            request.result.complete(Arrays.copyOfRange(scores, offset, offset + request.count));
+            offset += request.count;
+        }
+    }
+
+    /**
+     * Termine en erreur les requêtes encore en file.
+     */
+    private void failPending() {
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.result.completeExceptionally(new IllegalStateException("Broker d'inférence fermé"));
+        }
+    }
+
+    /**
+     * Arrête les workers du broker et libère les copies du réseau. Les
+     * évaluations demandées ensuite sont faites directement par le modèle,
+     * dans le thread appelant.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread dispatcher : dispatchers) {
+            dispatcher.interrupt();
+        }
+        try {
+            for (Thread dispatcher : dispatchers) {
+                dispatcher.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failPending();
+        if (pooled) {
+            model.close();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return model.getName();
+    }
+}
@@ -3,22 +3,129 @@ package com.parallelai.models.utils;
 import com.parallelai.game.Board;
 import com.parallelai.game.Move;
 
+import java.util.Arrays;
+
 /**
  * Interface pour les modèles d'évaluation des états de jeu.
  * Chaque modèle implémente sa propre stratégie d'évaluation des positions.
  */
 public interface Model {
+    /** Score neutre, retenu pour les coups d'un modèle en échec */
+    double NEUTRAL_SCORE = 0.5;
+
     /**
      * Évalue un coup potentiel et retourne un score entre 0 et 1.
      * Les scores plus élevés indiquent de meilleurs coups selon la stratégie du
      * modèle.
+     *
+     * Le coup doit être jouable sur le plateau. Les modèles peuvent le jouer
+     * puis l'annuler sur le plateau lui-même, sans copie : le plateau est
+     * restauré à la sortie, mais ne doit pas être lu ni modifié par un autre
+     * thread pendant l'appel.
      * 
      * @param move  Le coup à évaluer
      * @param board État actuel du plateau
      * @return Score d'évaluation entre 0 (pire) et 1 (meilleur)
+     * @throws IllegalArgumentException Si le coup n'est pas jouable (case
+     *                                  occupée ou aucun pion retourné)
+     * @throws IllegalStateException    Si le modèle ne peut pas évaluer le
+     *                                  coup (réseau absent, passe en échec)
      */
     double evaluateMove(Move move, Board board);
 
+    /**
+     * Évalue plusieurs coups jouables sur un même plateau. Les modèles à
+     * réseau de neurones évaluent tous les coups en une seule passe ;
+     * l'implémentation par défaut appelle {@link #evaluateMove} pour chacun.
+     * Le contrat sur le plateau est celui de {@link #evaluateMove}.
+     *
+     * @param board État actuel du plateau
+     * @param moves Les coups à évaluer, tous jouables sur ce plateau
+     * @return Les scores entre 0 et 1, dans l'ordre des coups
+     * @throws IllegalArgumentException Si un coup n'est pas jouable
+     * @throws IllegalStateException    Si le modèle ne peut pas évaluer les
+     *                                  coups
+     */
+    default double[] evaluateMoves(Board board, Move[] moves) {
+        double[] scores = new double[moves.length];
+        for (int i = 0; i < moves.length; i++) {
+            scores[i] = evaluateMove(moves[i], board);
+        }
+        return scores;
+    }
+
+    /**
+     * Indique si le modèle gagne à recevoir tous les coups d'un tour en un
+     * seul appel à {@link #evaluateMoves}. Les joueurs interrogent les autres
+     * modèles coup par coup, sans allouer de tableau.
+     *
+     * @return true si le modèle évalue les coups par lots, false par défaut
+     */
+    default boolean evaluatesInBatches() {
+        return false;
+    }
+
+    /**
+     * Évalue un coup pour un joueur, qui doit jouer même si le modèle est
+     * en échec : l'erreur est signalée et le coup reçoit
+     * {@link #NEUTRAL_SCORE}.
+     *
+     * @param model Le modèle d'évaluation
+     * @param move  Le coup à évaluer, jouable sur ce plateau
+     * @param board État actuel du plateau
+     * @return Le score du modèle, ou le score neutre
+     * @throws IllegalArgumentException Si le coup n'est pas jouable
+     */
+    static double evaluateOrNeutral(Model model, Move move, Board board) {
+        try {
+            return model.evaluateMove(move, board);
+        } catch (IllegalStateException e) {
+            System.err.println("Erreur lors de l'évaluation du coup : " + e.getMessage());
+            return NEUTRAL_SCORE;
+        }
+    }
+
+    /**
+     * Évalue des coups pour un joueur, qui doit jouer même si le modèle est
+     * en échec : l'erreur est signalée et tous les coups reçoivent
+     * {@link #NEUTRAL_SCORE}. Les modèles eux-mêmes ne renvoient jamais ce
+     * score de repli, que {@link CachedModel} prendrait pour une évaluation.
+     *
+     * @param model Le modèle d'évaluation
+     * @param board État actuel du plateau
+     * @param moves Les coups à évaluer, tous jouables sur ce plateau
+     * @return Les scores du modèle, ou le score neutre pour chaque coup
+     * @throws IllegalArgumentException Si un coup n'est pas jouable
+     */
+    static double[] evaluateOrNeutral(Model model, Board board, Move[] moves) {
+        try {
+            return model.evaluateMoves(board, moves);
+        } catch (IllegalStateException e) {
+            System.err.println("Erreur lors de l'évaluation des coups : " + e.getMessage());
+            double[] scores = new double[moves.length];
+            Arrays.fill(scores, NEUTRAL_SCORE);
+            return scores;
+        }
+    }
+
+    /**
+     * Retourne une instance équivalente utilisable en parallèle de celle-ci,
+     * depuis un autre thread. Par défaut le modèle est considéré sûr en
+     * accès concurrent et renvoie lui-même.
+     *
+     * @return Une réplique indépendante, ou ce modèle
+     */
+    default Model replicate() {
+        return this;
+    }
+
+    /**
+     * Libère les ressources du modèle (threads, réseaux). Ne fait rien par
+     * défaut.
+     */
+    default void close() {
+    }
+
     /**
      * Retourne le nom de l'implémentation du modèle.
      * 
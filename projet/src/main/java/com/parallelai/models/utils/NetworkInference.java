@@ -0,0 +1,141 @@
+package com.parallelai.models.utils;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
+import org.nd4j.linalg.api.memory.enums.AllocationPolicy;
+import org.nd4j.linalg.api.memory.enums.LearningPolicy;
+import org.nd4j.linalg.api.memory.enums.ResetPolicy;
+import org.nd4j.linalg.api.memory.enums.SpillPolicy;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+/**
+ * Passe avant d'un réseau sans allocation hors tas en régime établi.
+ *
+ * Chaque thread garde un seul tableau d'entrée natif, dimensionné pour le
+ * plus grand lot rencontré. Un lot de count exemples en remplit les count
+ * premières lignes en une copie depuis le tableau Java des plateaux
+ * encodés, et le réseau reçoit une vue sur ces lignes : les tailles de lot
+ * variables du broker ne provoquent aucune allocation. La sortie du réseau
+ * est placée dans un workspace ND4J propre au thread, dont la mémoire est
+ * réutilisée d'un appel à l'autre ; les scores en sont lus avant sa
+ * fermeture.
+ */
+public final class NetworkInference {
+    /**
+     * Nombre maximal de valeurs du tableau d'entrée gardé par thread
+     * (16 Mo) : un lot plus grand reçoit un tableau à usage unique
+     */
+    private static final long MAX_CACHED_VALUES = 1L << 22;
+
+    /** Workspace de sortie : taille apprise au premier appel, agrandie si besoin */
+    private static final WorkspaceConfiguration WORKSPACE = WorkspaceConfiguration.builder()
+            .policyAllocation(AllocationPolicy.OVERALLOCATE)
+            .overallocationLimit(0.2)
+            .policyLearning(LearningPolicy.FIRST_LOOP)
+            .policyReset(ResetPolicy.BLOCK_LEFT)
+            .policySpill(SpillPolicy.REALLOCATE)
+            .build();
+
+    /** Tableau d'entrée d'un thread et ses vues sur les premières lignes */
+    private static final class Inputs {
+        INDArray full;
+        INDArray[] views = new INDArray[0];
+
+        int capacity() {
+            return views.length - 1;
+        }
+    }
+
+    private final MultiLayerNetwork network;
+    private final long[] exampleShape;
+    private final int exampleLength;
+    private final String workspaceId;
+    private final ThreadLocal<Inputs> inputs = ThreadLocal.withInitial(Inputs::new);
+
+    /**
+     * @param network      Le réseau à évaluer
+     * @param workspaceId  L'identifiant du workspace de sortie
+     * @param exampleShape La forme d'un exemple en entrée, sans la
+     *                     dimension du lot (ex. 1, 8, 8)
+     */
+    public NetworkInference(MultiLayerNetwork network, String workspaceId, long... exampleShape) {
+        this.network = network;
+        this.workspaceId = workspaceId;
+        this.exampleShape = exampleShape;
+        long length = 1;
+        for (long dimension : exampleShape) {
+            length *= dimension;
+        }
+        this.exampleLength = (int) length;
+    }
+
+    /**
+     * Évalue un lot d'exemples et renvoie la première sortie de chacun.
+     *
+     * @param features Les exemples, exampleLength valeurs par exemple
+     * @param count    Le nombre d'exemples
+     * @return Les sorties du réseau, dans l'ordre des exemples
+     */
+    public double[] output(float[] features, int count) {
+        if (features.length != count * exampleLength) {
+            throw new IllegalArgumentException("Taille des données incohérente : " + features.length
+                    + " valeurs pour " + count + " exemples");
+        }
+        INDArray input = input(features, count);
+
+        double[] scores = new double[count];
+        try (MemoryWorkspace workspace = Nd4j.getWorkspaceManager().getAndActivateWorkspace(WORKSPACE,
+                workspaceId)) {
+            INDArray output = network.output(input, false, workspace);
+            long stride = output.length() / count;
+            for (int i = 0; i < count; i++) {
+                scores[i] = output.getDouble(i * stride);
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Copie un lot dans le tableau d'entrée du thread courant et renvoie la
+     * vue sur ses count premières lignes. Le tableau est agrandi au moins du
+     * double lorsqu'un lot le dépasse, puis réutilisé par tous les lots.
+     */
+    private INDArray input(float[] features, int count) {
+        long size = (long) count * exampleLength;
+        if (size > MAX_CACHED_VALUES) {
+            return Nd4j.create(features, shape(count), 'c');
+        }
+
+        Inputs cache = inputs.get();
+        if (count > cache.capacity()) {
+            int capacity = Math.max(count, Math.max(2 * cache.capacity(), InferenceBroker.DEFAULT_MAX_BATCH));
+            capacity = (int) Math.max(count, Math.min(capacity, MAX_CACHED_VALUES / exampleLength));
+            cache.full = Nd4j.create(DataType.FLOAT, shape(capacity));
+            cache.views = new INDArray[capacity + 1];
+            cache.views[capacity] = cache.full;
+        }
+        // En ordre 'c', les premières lignes sont le début du tampon
+        cache.full.data().setData(features);
+
+        INDArray view = cache.views[count];
+        if (view == null) {
+            view = cache.full.get(NDArrayIndex.interval(0, count));
+            cache.views[count] = view;
+        }
+        return view;
+    }
+
+    /**
+     * @return La forme d'un lot de count exemples
+     */
+    private long[] shape(int count) {
+        long[] shape = new long[exampleShape.length + 1];
+        shape[0] = count;
+        System.arraycopy(exampleShape, 0, shape, 1, exampleShape.length);
+        return shape;
+    }
+}
@@ -0,0 +1,45 @@
+package com.parallelai.models.utils;
+
+import com.parallelai.game.Board;
+import com.parallelai.game.Move;
+
+/**
+ * Modèle reposant sur un réseau de neurones qui évalue des lots de plateaux
+ * encodés par {@link BoardFeatures}. Les coups sont évalués en encodant le
+ * plateau obtenu après chacun d'eux ; un {@link InferenceBroker} peut ainsi
+ * regrouper les plateaux de plusieurs parties dans un même lot.
+ */
+public interface NeuralModel extends Model {
+    /**
+     * Évalue un lot de plateaux en une seule passe du réseau.
+     *
+     * @param features Les plateaux encodés, {@link BoardFeatures#CELLS}
+     *                 valeurs par plateau
+     * @param count    Le nombre de plateaux
+     * @return Les scores entre 0 et 1, dans l'ordre des plateaux
+     * @throws IllegalStateException Si le réseau ne peut pas évaluer le lot
+     */
+    double[] evaluateBoards(float[] features, int count);
+
+    /**
+     * Un réseau n'accepte qu'une passe à la fois : les modèles à réseau
+     * renvoient une réplique dotée de sa propre copie du réseau.
+     */
+    @Override
+    NeuralModel replicate();
+
+    @Override
+    default boolean evaluatesInBatches() {
+        return true;
+    }
+
+    @Override
+    default double evaluateMove(Move move, Board board) {
+        return evaluateMoves(board, new Move[] { move })[0];
+    }
+
+    @Override
+    default double[] evaluateMoves(Board board, Move[] moves) {
+        return evaluateBoards(BoardFeatures.afterMoves(board, moves), moves.length);
+    }
+}
@@ -0,0 +1,87 @@
+package com.parallelai.models.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool de répliques d'un modèle à réseau de neurones, sûr en accès
+ * concurrent.
+ *
+ * Un réseau DL4J n'accepte qu'une passe à la fois : chaque évaluation
+ * emprunte une réplique libre, l'utilise seule puis la rend. Avec une
+ * réplique par thread d'évaluation, les threads ne s'attendent jamais et
+ * les passes s'exécutent en parallèle. L'encodage des plateaux se fait
+ * avant l'emprunt, dans le thread appelant.
+ */
+public class PooledModel implements NeuralModel {
+    private final NeuralModel model;
+    private final BlockingQueue<NeuralModel> pool;
+
+    /**
+     * @param model Le modèle d'origine, première réplique du pool
+     * @param size  Le nombre de répliques, modèle d'origine compris
+     */
+    public PooledModel(NeuralModel model, int size) {
+        this.model = model;
+        this.pool = new ArrayBlockingQueue<>(Math.max(1, size));
+        pool.add(model);
+        for (int i = 1; i < size; i++) {
+            NeuralModel replica = model.replicate();
+            if (replica == model) {
+                break; // Modèle sans état propre : une seule instance suffit
+            }
+            pool.add(replica);
+        }
+    }
+
+    /**
+     * Évalue un lot de plateaux avec la première réplique libre.
+     */
+    @Override
+    public double[] evaluateBoards(float[] features, int count) {
+        NeuralModel replica;
+        try {
+            replica = pool.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Évaluation interrompue", e);
+        }
+        try {
+            return replica.evaluateBoards(features, count);
+        } finally {
+            pool.add(replica);
+        }
+    }
+
+    /**
+     * Le pool est lui-même sûr en accès concurrent.
+     */
+    @Override
+    public NeuralModel replicate() {
+        return this;
+    }
+
+    /**
+     * Libère les répliques libres, sauf le modèle d'origine qui reste au
+     * pool : les évaluations suivantes passent par lui seul.
+     */
+    @Override
+    public void close() {
+        List<NeuralModel> free = new ArrayList<>();
+        pool.drainTo(free);
+        for (NeuralModel replica : free) {
+            if (replica == model) {
+                pool.add(model);
+            } else {
+                replica.close();
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return model.getName();
+    }
+}
@@ -1,14 +1,13 @@
 package com.parallelai.players;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import com.parallelai.game.Board;
 import com.parallelai.game.Disc;
 import com.parallelai.game.Move;
 import com.parallelai.game.Player;
 import com.parallelai.models.utils.Model;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * Joueur IA qui utilise un modèle pour évaluer et sélectionner les meilleurs
  * coups.
@@ -36,47 +35,47 @@ public class AIPlayer extends Player {
      */
     @Override
     public Move getMove(Board board) {
-        List<Move> validMoves = new ArrayList<>();
-        List<Double> evaluations = new ArrayList<>();
-
-        // Recherche des coups valides et obtention de leurs évaluations depuis le
-        // modèle
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Move move = new Move(i, j, color);
-                if (board.isValidMove(move, color)) {
-                    validMoves.add(move);
-                    double eval = model.evaluateMove(move, board);
-                    if (color == Disc.WHITE) {
-                        eval = 1.0 - eval;
-                    }
-                    evaluations.add(eval);
-                }
-            }
+        long validMoves = board.getValidMoves(color);
+        if (validMoves == 0) {
+            return null;
         }
 
-        if (validMoves.isEmpty()) {
-            return null;
+        Move bestMove = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        int nbBestMoves = 0;
+
+        // Les modèles à réseau évaluent tous les coups jouables en un seul
+        // appel ; les autres sont interrogés coup par coup, sans allocation
+        double[] evals = null;
+        if (model.evaluatesInBatches()) {
+            evals = Model.evaluateOrNeutral(model, board, Move.allOf(validMoves, color));
         }
 
-        // Trouve le meilleur score
-        double bestScore = evaluations.get(0);
-        for (int i = 1; i < evaluations.size(); i++) {
-            if (evaluations.get(i) > bestScore) {
-                bestScore = evaluations.get(i);
+        // Parcourt les cases jouables du masque et garde le meilleur score.
+        // En cas d'égalité, tirage uniforme parmi les meilleurs coups
+        // (échantillonnage par réservoir, sans liste intermédiaire)
+        for (int i = 0; validMoves != 0; i++) {
+            int square = Long.numberOfTrailingZeros(validMoves);
+            validMoves &= validMoves - 1;
+
+            Move move = Move.of(square, color);
+            double eval = evals != null ? evals[i] : Model.evaluateOrNeutral(model, move, board);
+            if (color == Disc.WHITE) {
+                eval = 1.0 - eval;
             }
-        }
 
-        // Collecte tous les coups ayant le meilleur score
-        List<Move> bestMoves = new ArrayList<>();
-        for (int i = 0; i < evaluations.size(); i++) {
-            if (evaluations.get(i) == bestScore) {
-                bestMoves.add(validMoves.get(i));
+            if (eval > bestScore) {
+                bestScore = eval;
+                bestMove = move;
+                nbBestMoves = 1;
+            } else if (eval == bestScore) {
+                nbBestMoves++;
+                if (ThreadLocalRandom.current().nextDouble() * nbBestMoves < 1.0) {
+                    bestMove = move;
+                }
             }
         }
 
-        // Sélectionne aléatoirement l'un des meilleurs coups
-        int randomIndex = (int) (Math.random() * bestMoves.size());
-        return bestMoves.get(randomIndex);
+        return bestMove;
     }
-}
\ No newline at end of file
+}
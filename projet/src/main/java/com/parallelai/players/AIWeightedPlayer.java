@@ -1,14 +1,13 @@
 package com.parallelai.players;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import com.parallelai.game.Board;
 import com.parallelai.game.Disc;
 import com.parallelai.game.Move;
 import com.parallelai.game.Player;
 import com.parallelai.models.utils.Model;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * Joueur IA qui utilise un modèle pour évaluer et sélectionner les coups.
  */
@@ -40,47 +39,43 @@ public class AIWeightedPlayer extends Player {
      */
     @Override
     public Move getMove(Board board) {
-        List<Move> validMoves = new ArrayList<>();
-        List<Double> evaluations = new ArrayList<>();
-
-        // Collecte des coups et leurs évaluations
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Move move = new Move(i, j, color);
-                if (board.isValidMove(move, color)) {
-                    validMoves.add(move);
-                    double eval = model.evaluateMove(move, board);
-                    if (color == Disc.WHITE) {
-                        eval = 1.0 - eval;
-                    }
-                    evaluations.add(eval);
-                }
-            }
+        long validMoves = board.getValidMoves(color);
+        if (validMoves == 0) {
+            return null;
         }
 
-        if (validMoves.isEmpty()) {
-            return null;
+        // Les modèles à réseau évaluent tous les coups jouables en un seul
+        // appel ; les autres sont interrogés coup par coup, sans allocation
+        double[] evals = null;
+        if (model.evaluatesInBatches()) {
+            evals = Model.evaluateOrNeutral(model, board, Move.allOf(validMoves, color));
         }
 
-        // Application de la pondération exponentielle
-        List<Double> weights = new ArrayList<>();
+        Move selectedMove = null;
+        Move lastMove = null;
         double totalWeight = 0.0;
-        for (Double eval : evaluations) {
+
+        // Sélection aléatoire pondérée en une seule passe : chaque coup remplace
+        // le coup retenu avec une probabilité poids / somme des poids vus
+        for (int i = 0; validMoves != 0; i++) {
+            int square = Long.numberOfTrailingZeros(validMoves);
+            validMoves &= validMoves - 1;
+
+            Move move = Move.of(square, color);
+            lastMove = move;
+            double eval = evals != null ? evals[i] : Model.evaluateOrNeutral(model, move, board);
+            if (color == Disc.WHITE) {
+                eval = 1.0 - eval;
+            }
+
+            // Application de la pondération exponentielle
             double weight = Math.exp(eval * temperature);
-            weights.add(weight);
             totalWeight += weight;
-        }
-
-        // Sélection aléatoire pondérée
-        double random = Math.random() * totalWeight;
-        double weightSum = 0;
-        for (int i = 0; i < weights.size(); i++) {
-            weightSum += weights.get(i);
-            if (random <= weightSum) {
-                return validMoves.get(i);
+            if (ThreadLocalRandom.current().nextDouble() * totalWeight < weight) {
+                selectedMove = move;
             }
         }
 
-        return validMoves.get(validMoves.size() - 1);
+        return selectedMove != null ? selectedMove : lastMove;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,121 @@
+package com.parallelai.training;
+
+import org.deeplearning4j.util.ModelSerializer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Écriture asynchrone de points de reprise (checkpoints) sur disque.
+ * L'entraînement ne fait que capturer un {@link ModelSnapshot} ; la
+ * reconstruction du réseau et sa sérialisation ont lieu sur un thread
+ * dédié, pendant l'epoch suivante.
+ *
+ * Chaque checkpoint comprend le réseau de l'epoch, le meilleur réseau
+ * lorsqu'il a changé, puis l'état de reprise ({@link TrainingCheckpoint})
+ * qui les désigne. Seuls les {@link TrainingCheckpoint#KEPT_EPOCH_FILES}
+ * derniers réseaux par epoch sont gardés sur disque.
+ */
+public class CheckpointWriter implements AutoCloseable {
+    private final File directory;
+    private final String modelName;
+    private final ExecutorService executor;
+
+    /**
+     * @param directory Le répertoire des checkpoints, créé si nécessaire
+     * @param modelName Le nom du modèle, repris dans le nom des fichiers
+     */
+    public CheckpointWriter(String directory, String modelName) {
+        this.directory = new File(directory);
+        this.modelName = modelName;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "checkpoint-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param epoch Le numéro d'epoch (à partir de 1)
+     * @return Le fichier du checkpoint de cette epoch
+     */
+    public File checkpointFile(int epoch) {
+        return TrainingCheckpoint.epochFile(directory.getPath(), modelName, epoch);
+    }
+
+    /**
+     * @return Le fichier du meilleur réseau
+     */
+    public File bestFile() {
+        return TrainingCheckpoint.bestFile(directory.getPath(), modelName);
+    }
+
+    /**
+     * Programme l'écriture d'un checkpoint. Les écritures sont faites dans
+     * l'ordre de leur programmation ; l'état n'est écrit qu'une fois les
+     * réseaux qu'il désigne écrits. Une écriture qui échoue, quelle qu'en
+     * soit la cause, est signalée sur la sortie d'erreur et n'empêche pas
+     * les suivantes.
+     *
+     * @param snapshot L'état du réseau à écrire
+     * @param best     Le meilleur réseau s'il a changé depuis le checkpoint
+     *                 précédent, null sinon
+     * @param state    L'état de reprise, dont l'epoch terminée
+     */
+    public void write(ModelSnapshot snapshot, ModelSnapshot best, TrainingCheckpoint state) {
+        executor.submit(() -> {
+            File file = checkpointFile(state.getEpoch());
+            try {
+                directory.mkdirs();
+                writeNetwork(snapshot, file);
+                state.setModelFile(file.getName());
+                if (best != null) {
+                    writeNetwork(best, bestFile());
+                }
+                if (bestFile().isFile()) {
+                    state.setBestFile(bestFile().getName());
+                }
+                state.save();
+                TrainingCheckpoint.pruneEpochFiles(directory.getPath(), modelName, state.getEpoch(),
+                        TrainingCheckpoint.KEPT_EPOCH_FILES);
+            } catch (IOException e) {
+                System.err.println("Erreur lors de l'écriture du checkpoint " + file + " : " + e.getMessage());
+            } catch (RuntimeException e) {
+                // Sans ce bloc, l'exception resterait dans le Future ignoré
+                System.err.println("Erreur lors de l'écriture du checkpoint " + file + " : " + e);
+            }
+        });
+    }
+
+    /**
+     * Écrit un réseau dans un fichier temporaire puis le renomme.
+     */
+    private void writeNetwork(ModelSnapshot snapshot, File file) throws IOException {
+        File tmp = new File(directory, file.getName() + ".tmp");
+        ModelSerializer.writeModel(snapshot.toNetwork(), tmp, true);
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Impossible de renommer " + tmp);
+            }
+        }
+    }
+
+    /**
+     * Attend la fin des écritures programmées.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.HOURS)) {
+                System.err.println("Écriture des checkpoints non terminée après une heure");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.parallelai.training;
 
-import com.parallelai.exec.train.TrainerMetrics;
 import com.parallelai.exec.train.TrainerResult;
 import com.parallelai.training.utils.DatasetImporter;
 
@@ -10,13 +9,9 @@ import org.deeplearning4j.nn.conf.inputs.InputType;
 import org.deeplearning4j.nn.conf.layers.*;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.nn.weights.WeightInit;
-import org.deeplearning4j.optimize.listeners.ScoreIterationListener;
-import org.nd4j.evaluation.regression.RegressionEvaluation;
 import org.nd4j.linalg.activations.Activation;
 import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
 import org.nd4j.linalg.learning.config.Adam;
-import org.nd4j.linalg.dataset.DataSet;
-import org.deeplearning4j.util.ModelSerializer;
 
 import java.io.*;
 
@@ -28,9 +23,22 @@ import java.io.*;
  * probabilité de victoire.
  */
 public class CnnTraining {
+    /** Type de réseau, enregistré dans les checkpoints */
+    public static final String MODEL_TYPE = "CNN";
+
     /** Taille du plateau (8x8) */
     private static final int BOARD_SIZE = 8;
 
+    /** Options d'entraînement */
+    private TrainingOptions options = new TrainingOptions();
+
+    /**
+     * @param options Les options d'entraînement à utiliser
+     */
+    public void setOptions(TrainingOptions options) {
+        this.options = options;
+    }
+
     /**
      * Entraîne un réseau de neurones CNN sur un jeu de données d'othello.
      * 
@@ -45,7 +53,7 @@ public class CnnTraining {
     public TrainerResult train(String datasetPath, String modelName, int batchSize, int nEpochs) throws IOException {
         // Chargement et préparation des données, 80% du dataset pour l'entraînement et
         // 20% pour l'évaluation
-        DatasetImporter importer = new DatasetImporter();
+        DatasetImporter importer = options.newImporter();
         DataSetIterator[] iterators = importer.splitDataset(datasetPath, batchSize, 0.8);
         DataSetIterator trainIterator = iterators[0];
         DataSetIterator evalIterator = iterators[1];
@@ -86,52 +94,7 @@ public class CnnTraining {
         MultiLayerNetwork model = new MultiLayerNetwork(conf);
         model.init();
 
-        // Ajout de listeners pour les métriques
-        model.setListeners(new TrainerMetrics(nEpochs), new ScoreIterationListener(10));
-
-        // Entraine le modèle avec évaluation après chaque époque
-        System.out.println("Début de l'entraînement...");
-        RegressionEvaluation finalEval = null;
-        double bestMSE = Double.MAX_VALUE;
-        MultiLayerNetwork bestModel = null;
-
-        for (int i = 0; i < nEpochs; i++) {
-            model.fit(trainIterator);
-
-            // Evalue le modèle
-            RegressionEvaluation eval = new RegressionEvaluation(1); // 1 output column
-
-            // Evaluate on the evaluation dataset
-            while (evalIterator.hasNext()) {
-                DataSet ds = evalIterator.next();
-                eval.eval(ds.getLabels(), model.output(ds.getFeatures()));
-            }
-
-            // Vérifie si le modèle actuel est meilleur que celui de l'epoch précédente
-            double currentMSE = eval.meanSquaredError(0);
-            if (currentMSE < bestMSE) {
-                bestMSE = currentMSE;
-                // Sauvegarde le meilleur modèle
-                File tempFile = File.createTempFile("bestmodel", "tmp");
-                ModelSerializer.writeModel(model, tempFile, true);
-                bestModel = ModelSerializer.restoreMultiLayerNetwork(tempFile);
-                tempFile.delete();
-                finalEval = eval;
-            }
-
-            // Affiche les métriques
-            System.out.println(String.format("Epoch %d/%d", (i + 1), nEpochs));
-            System.out.println("MSE: " + eval.meanSquaredError(0));
-            System.out.println("RMSE: " + eval.rootMeanSquaredError(0));
-            System.out.println("R²: " + eval.rSquared(0));
-            System.out.println("--------------------");
-
-            // Reset iterators
-            trainIterator.reset();
-            evalIterator.reset();
-        }
-
-        // Return le meilleur modèle et son évaluation
-        return new TrainerResult(bestModel, finalEval);
+        // Entraînement, évaluation et sélection du meilleur modèle
+        return new TrainingLoop(options, MODEL_TYPE, datasetPath).run(model, trainIterator, evalIterator, modelName, nEpochs);
     }
 }
\ No newline at end of file
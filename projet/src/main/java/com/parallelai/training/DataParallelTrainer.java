@@ -0,0 +1,235 @@
+package com.parallelai.training;
+
+import com.parallelai.exec.train.TrainerMetrics;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.optimize.api.TrainingListener;
+import org.deeplearning4j.parallelism.ParallelWrapper;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exécute les epochs d'entraînement d'un réseau, sur un seul worker ou en
+ * parallèle de données (data-parallel) selon les {@link TrainingOptions}.
+ *
+ * En parallèle, un ParallelWrapper réplique le réseau sur N workers qui se
+ * répartissent les batchs. Les répliques sont synchronisées soit par
+ * moyenne des paramètres toutes les k itérations, soit par partage des
+ * gradients à chaque itération.
+ *
+ * Les répliques ne reçoivent pas les listeners du réseau, qui
+ * compteraient chaque epoch N fois : les débuts et fins d'epoch sont
+ * signalés ici, une fois par epoch, avec le réseau principal. Les premiers
+ * batchs de la première epoch parallèle sont entraînés sur un seul worker
+ * pour mesurer le débit de référence de l'efficacité affichée par
+ * {@link TrainerMetrics} ; les workers reprennent l'epoch au batch suivant.
+ * Aucun batch n'est donc entraîné en plus, et l'itérateur n'est jamais
+ * rembobiné ici : sa position reste celle de la boucle d'entraînement.
+ *
+ * Les répliques copient la configuration du réseau à leur création : un
+ * changement de taux d'apprentissage entre deux epochs les recrée à partir
+ * du réseau principal.
+ */
+public class DataParallelTrainer implements AutoCloseable {
+    /** Nombre de batchs entraînés sur un seul worker pour la référence */
+    private static final int CALIBRATION_BATCHES = 20;
+
+    private final MultiLayerNetwork model;
+    private final TrainingOptions options;
+    private final TrainerMetrics metrics;
+    private final List<TrainingListener> listeners = new ArrayList<>();
+    private ParallelWrapper wrapper;
+    private boolean calibrated;
+    private boolean listenersDetached;
+
+    /**
+     * @param model   Le réseau à entraîner, avec ses listeners
+     * @param options Les options d'entraînement
+     * @param metrics Les métriques alimentées en nombre d'exemples traités
+     */
+    public DataParallelTrainer(MultiLayerNetwork model, TrainingOptions options, TrainerMetrics metrics) {
+        this.model = model;
+        this.options = options;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Entraîne le réseau sur une epoch complète.
+     *
+     * @param trainIterator Les données d'entraînement
+     */
+    public void fitEpoch(DataSetIterator trainIterator) {
+        DataSetIterator counted = new CountingIterator(trainIterator, metrics);
+        if (options.getWorkers() <= 1) {
+            model.fit(counted);
+            return;
+        }
+
+        if (!listenersDetached) {
+            listeners.addAll(model.getListeners());
+            model.setListeners(new ArrayList<TrainingListener>());
+            listenersDetached = true;
+        }
+
+        for (TrainingListener listener : listeners) {
+            listener.onEpochStart(model);
+        }
+        if (!calibrated) {
+            calibrate(counted);
+            calibrated = true;
+        }
+        if (wrapper == null) {
+            wrapper = new ParallelWrapper.Builder<>(model)
+                    .workers(options.getWorkers())
+                    .prefetchBuffer(0) // Préchargement assuré par l'itérateur
+                    .averagingFrequency(options.getAveragingFrequency())
+                    .reportScoreAfterAveraging(true)
+                    .trainingMode(options.isSharedGradients()
+                            ? ParallelWrapper.TrainingMode.SHARED_GRADIENTS
+                            : ParallelWrapper.TrainingMode.AVERAGING)
+                    .build();
+        }
+        // Un itérateur épuisé serait rembobiné par le wrapper
+        if (counted.hasNext()) {
+            wrapper.fit(counted);
+        }
+        for (TrainingListener listener : listeners) {
+            listener.onEpochEnd(model);
+        }
+    }
+
+    /**
+     * Change le taux d'apprentissage de toutes les couches, appliqué à
+     * partir de l'epoch suivante.
+     *
+     * @param learningRate Le nouveau taux d'apprentissage
+     */
+    public void setLearningRate(double learningRate) {
+        model.setLearningRate(learningRate);
+        if (wrapper != null) {
+            // Les répliques seront recréées avec le nouveau taux
+            wrapper.shutdown();
+            wrapper = null;
+        }
+    }
+
+    /**
+     * Entraîne les premiers batchs de l'epoch sur le seul réseau principal
+     * et mesure ce débit de référence. Les batchs consommés font partie de
+     * l'epoch : l'itérateur n'est pas rembobiné.
+     */
+    private void calibrate(DataSetIterator trainIterator) {
+        long examples = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < CALIBRATION_BATCHES && trainIterator.hasNext(); i++) {
+            DataSet batch = trainIterator.next();
+            model.fit(batch);
+            examples += batch.numExamples();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (examples > 0 && elapsed > 0) {
+            metrics.setParallelism(options.getWorkers(), examples * 1e9 / elapsed);
+        }
+    }
+
+    /**
+     * Arrête les workers et rend ses listeners au réseau.
+     */
+    @Override
+    public void close() {
+        if (wrapper != null) {
+            wrapper.shutdown();
+            wrapper = null;
+        }
+        if (listenersDetached) {
+            model.setListeners(listeners);
+            listeners.clear();
+            listenersDetached = false;
+        }
+        calibrated = false;
+    }
+
+    /**
+     * Itérateur transmettant au suivi des métriques le nombre d'exemples
+     * de chaque batch servi.
+     */
+    private static final class CountingIterator implements DataSetIterator {
+        private final DataSetIterator source;
+        private final TrainerMetrics metrics;
+
+        CountingIterator(DataSetIterator source, TrainerMetrics metrics) {
+            this.source = source;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return source.hasNext();
+        }
+
+        @Override
+        public DataSet next() {
+            return count(source.next());
+        }
+
+        @Override
+        public DataSet next(int num) {
+            return count(source.next(num));
+        }
+
+        private DataSet count(DataSet batch) {
+            metrics.addExamples(batch.numExamples());
+            return batch;
+        }
+
+        @Override
+        public int inputColumns() {
+            return source.inputColumns();
+        }
+
+        @Override
+        public int totalOutcomes() {
+            return source.totalOutcomes();
+        }
+
+        @Override
+        public boolean resetSupported() {
+            return source.resetSupported();
+        }
+
+        @Override
+        public boolean asyncSupported() {
+            return source.asyncSupported();
+        }
+
+        @Override
+        public void reset() {
+            source.reset();
+        }
+
+        @Override
+        public int batch() {
+            return source.batch();
+        }
+
+        @Override
+        public void setPreProcessor(DataSetPreProcessor preProcessor) {
+            source.setPreProcessor(preProcessor);
+        }
+
+        @Override
+        public DataSetPreProcessor getPreProcessor() {
+            return source.getPreProcessor();
+        }
+
+        @Override
+        public List<String> getLabels() {
+            return source.getLabels();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.parallelai.training;
+
+/**
+ * Évolution du taux d'apprentissage au fil des epochs.
+ *
+ * Trois politiques sont proposées en plus du taux constant :
+ * - par paliers : le taux est multiplié par un facteur toutes les k epochs ;
+ * - cosinus : le taux décroît du taux initial au taux minimal selon une
+ *   demi-période de cosinus sur la durée de l'entraînement ;
+ * - sur plateau : le taux est multiplié par un facteur lorsque la MSE de
+ *   validation ne s'est pas améliorée pendant un nombre donné d'epochs.
+ *
+ * Le taux initial est celui de l'updater du réseau. La politique sur plateau
+ * conserve un état : {@link #start(double)} le réinitialise au début de
+ * chaque entraînement et {@link #resume} le restaure à une reprise.
+ */
+public class LearningRateSchedule {
+    /** Politiques disponibles */
+    public enum Type {
+        CONSTANT, STEP, COSINE, PLATEAU
+    }
+
+    private final Type type;
+    private final double factor;
+    private final int period;
+    private final double minDelta;
+    private final double minRate;
+
+    // État de l'entraînement en cours
+    private double baseRate;
+    private double currentRate;
+    private double bestScore;
+    private int epochsWithoutImprovement;
+
+    private LearningRateSchedule(Type type, double factor, int period, double minDelta, double minRate) {
+        this.type = type;
+        this.factor = factor;
+        this.period = Math.max(1, period);
+        this.minDelta = Math.max(0, minDelta);
+        this.minRate = Math.max(0, minRate);
+    }
+
+    /**
+     * @return Un taux d'apprentissage constant
+     */
+    public static LearningRateSchedule constant() {
+        return new LearningRateSchedule(Type.CONSTANT, 1, 1, 0, 0);
+    }
+
+    /**
+     * @param factor      Facteur appliqué au taux à chaque palier (ex. 0.5)
+     * @param everyEpochs Nombre d'epochs par palier
+     * @return Une décroissance par paliers
+     */
+    public static LearningRateSchedule step(double factor, int everyEpochs) {
+        return new LearningRateSchedule(Type.STEP, factor, everyEpochs, 0, 0);
+    }
+
+    /**
+     * @param totalEpochs Nombre d'epochs de la décroissance complète
+     * @param minRate     Taux atteint à la fin de la décroissance
+     * @return Une décroissance en cosinus
+     */
+    public static LearningRateSchedule cosine(int totalEpochs, double minRate) {
+        return new LearningRateSchedule(Type.COSINE, 1, totalEpochs, 0, minRate);
+    }
+
+    /**
+     * @param factor   Facteur appliqué au taux à chaque réduction (ex. 0.5)
+     * @param patience Nombre d'epochs sans amélioration avant réduction
+     * @param minDelta Amélioration minimale de la MSE prise en compte
+     * @param minRate  Taux en dessous duquel il n'est plus réduit
+     * @return Une réduction du taux sur plateau de la MSE de validation
+     */
+    public static LearningRateSchedule plateau(double factor, int patience, double minDelta, double minRate) {
+        return new LearningRateSchedule(Type.PLATEAU, factor, patience, minDelta, minRate);
+    }
+
+    /**
+     * @return La politique utilisée
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Réinitialise la politique au début d'un entraînement.
+     *
+     * @param baseRate Le taux d'apprentissage initial du réseau
+     */
+    public void start(double baseRate) {
+        this.baseRate = baseRate;
+        this.currentRate = baseRate;
+        this.bestScore = Double.MAX_VALUE;
+        this.epochsWithoutImprovement = 0;
+    }
+
+    /**
+     * Reprend la politique dans l'état d'un entraînement interrompu.
+     *
+     * @param rate                     Le taux courant
+     * @param bestScore                La meilleure MSE vue
+     * @param epochsWithoutImprovement Le nombre d'epochs sans amélioration
+     */
+    public void resume(double rate, double bestScore, int epochsWithoutImprovement) {
+        this.currentRate = rate;
+        this.bestScore = bestScore;
+        this.epochsWithoutImprovement = epochsWithoutImprovement;
+    }
+
+    /**
+     * @return Le taux d'apprentissage courant
+     */
+    public double getRate() {
+        return currentRate;
+    }
+
+    /**
+     * @return La meilleure MSE vue par la réduction sur plateau
+     */
+    public double getBestScore() {
+        return bestScore;
+    }
+
+    /**
+     * @return Le nombre d'epochs sans amélioration de la réduction sur
+     *         plateau
+     */
+    public int getEpochsWithoutImprovement() {
+        return epochsWithoutImprovement;
+    }
+
+    /**
+     * Calcule le taux d'apprentissage de l'epoch suivante.
+     *
+     * @param epoch         Le nombre d'epochs terminées
+     * @param validationMse La MSE de validation de la dernière epoch
+     * @return Le taux à appliquer pour l'epoch suivante
+     */
+    public double next(int epoch, double validationMse) {
+        switch (type) {
+            case STEP:
+                currentRate = baseRate * Math.pow(factor, epoch / period);
+                break;
+            case COSINE:
+                double progress = Math.min(1.0, (double) epoch / period);
+                currentRate = minRate + 0.5 * (baseRate - minRate) * (1 + Math.cos(Math.PI * progress));
+                break;
+            case PLATEAU:
+                if (validationMse < bestScore - minDelta) {
+                    bestScore = validationMse;
+                    epochsWithoutImprovement = 0;
+                } else if (++epochsWithoutImprovement >= period) {
+                    currentRate = Math.max(minRate, currentRate * factor);
+                    epochsWithoutImprovement = 0;
+                }
+                break;
+            default:
+                break;
+        }
+        return currentRate;
+    }
+}
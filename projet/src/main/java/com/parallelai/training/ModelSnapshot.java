@@ -0,0 +1,53 @@
+package com.parallelai.training;
+
+import org.deeplearning4j.nn.api.Updater;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * Copie en mémoire de l'état d'un réseau à un instant donné : configuration,
+ * vecteur des paramètres et état de l'updater (moments d'Adam...).
+ *
+ * La capture coûte une copie des tableaux, sans sérialisation : elle
+ * remplace l'aller-retour par un fichier temporaire pour conserver le
+ * meilleur modèle. Le réseau n'est reconstruit qu'à la demande.
+ */
+public class ModelSnapshot {
+    private final MultiLayerConfiguration conf;
+    private final INDArray params;
+    private final INDArray updaterState;
+
+    private ModelSnapshot(MultiLayerConfiguration conf, INDArray params, INDArray updaterState) {
+        this.conf = conf;
+        this.params = params;
+        this.updaterState = updaterState;
+    }
+
+    /**
+     * Capture l'état courant d'un réseau.
+     *
+     * @param model Le réseau à copier
+     * @return La copie de son état
+     */
+    public static ModelSnapshot of(MultiLayerNetwork model) {
+        Updater updater = model.getUpdater();
+        INDArray state = updater == null ? null : updater.getStateViewArray();
+        return new ModelSnapshot(model.getLayerWiseConfigurations().clone(), model.params().dup(),
+                state == null ? null : state.dup());
+    }
+
+    /**
+     * Reconstruit un réseau indépendant à partir de la copie.
+     *
+     * @return Un nouveau réseau dans l'état capturé
+     */
+    public MultiLayerNetwork toNetwork() {
+        MultiLayerNetwork network = new MultiLayerNetwork(conf.clone());
+        network.init(params.dup(), false);
+        if (updaterState != null) {
+            network.getUpdater().setStateViewArray(network, updaterState.dup(), false);
+        }
+        return network;
+    }
+}
@@ -0,0 +1,436 @@
+package com.parallelai.training;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * État d'un entraînement interrompu, suffisant pour le reprendre à la
+ * dernière epoch sauvegardée : réseau (paramètres et état de l'updater),
+ * meilleur réseau, graine des données, taux d'apprentissage et compteurs
+ * de l'arrêt anticipé.
+ *
+ * L'état est un fichier de propriétés par modèle, écrit après les fichiers
+ * des réseaux qu'il désigne : un état présent sur disque désigne toujours
+ * des réseaux complets. La position de l'itérateur d'entraînement est le
+ * numéro d'epoch : avec la même graine, les itérateurs reproduisent
+ * l'ordre des exemples de chaque epoch.
+ *
+ * Le nom du modèle ne suffit pas à désigner un entraînement : l'état garde
+ * aussi le type du réseau et le dataset (nom et taille du fichier), et
+ * {@link #matches} refuse la reprise d'un entraînement différent.
+ */
+public class TrainingCheckpoint {
+    /** Nombre de checkpoints par epoch conservés par modèle */
+    public static final int KEPT_EPOCH_FILES = 3;
+
+    private final File directory;
+    private final String modelName;
+
+    /** Type du réseau (CNN ou MLP), nom et taille du dataset */
+    private String modelType;
+    private String dataset;
+    private long datasetSize = -1;
+
+    /** Nombre d'epochs terminées */
+    private int epoch;
+
+    /** Graine de l'import du dataset */
+    private long seed;
+
+    /** Taux d'apprentissage initial, courant et état de sa politique */
+    private double baseRate;
+    private double rate;
+    private double scheduleBestScore = Double.MAX_VALUE;
+    private int scheduleEpochsWithoutImprovement;
+
+    /** Meilleure MSE de validation et compteurs de l'arrêt anticipé */
+    private double bestMSE = Double.MAX_VALUE;
+    private double referenceMSE = Double.MAX_VALUE;
+    private int epochsWithoutImprovement;
+
+    /** Fichiers du réseau courant et du meilleur réseau (null si aucun) */
+    private String modelFile;
+    private String bestFile;
+
+    /**
+     * @param directory Le répertoire des checkpoints
+     * @param modelName Le nom du modèle
+     */
+    public TrainingCheckpoint(String directory, String modelName) {
+        this.directory = new File(directory);
+        this.modelName = modelName;
+    }
+
+    /**
+     * @param directory Le répertoire des checkpoints
+     * @param modelName Le nom du modèle
+     * @return Le fichier d'état du modèle
+     */
+    public static File stateFile(String directory, String modelName) {
+        return new File(directory, modelName + "_checkpoint.properties");
+    }
+
+    /**
+     * @param directory Le répertoire des checkpoints
+     * @param modelName Le nom du modèle
+     * @param epoch     Le numéro d'epoch (à partir de 1)
+     * @return Le fichier du checkpoint de cette epoch
+     */
+    public static File epochFile(String directory, String modelName, int epoch) {
+        return new File(directory, String.format("%s_epoch%03d.zip", modelName, epoch));
+    }
+
+    /**
+     * Supprime les checkpoints par epoch d'un modèle, sauf les keep plus
+     * récents jusqu'à l'epoch donnée. Ceux d'une epoch ultérieure, laissés
+     * par un entraînement précédent du même nom, sont aussi supprimés.
+     *
+     * @param directory Le répertoire des checkpoints
+     * @param modelName Le nom du modèle
+     * @param epoch     La dernière epoch écrite
+     * @param keep      Le nombre de checkpoints à conserver
+     */
+    public static void pruneEpochFiles(String directory, String modelName, int epoch, int keep) {
+        File[] files = new File(directory).listFiles();
+        if (files == null) {
+            return;
+        }
+        Pattern pattern = Pattern.compile(Pattern.quote(modelName) + "_epoch(\\d+)\\.zip");
+        List<Integer> kept = new ArrayList<>();
+        for (File file : files) {
+            Matcher matcher = pattern.matcher(file.getName());
+            if (!matcher.matches()) {
+                continue;
+            }
+            int number = Integer.parseInt(matcher.group(1));
+            if (number > epoch) {
+                file.delete();
+            } else {
+                kept.add(number);
+            }
+        }
+        Collections.sort(kept, Collections.reverseOrder());
+        for (int i = keep; i < kept.size(); i++) {
+            epochFile(directory, modelName, kept.get(i)).delete();
+        }
+    }
+
+    /**
+     * Supprime l'état de reprise et le meilleur réseau d'un modèle dont
+     * l'entraînement est terminé. Les derniers checkpoints par epoch sont
+     * conservés.
+     *
+     * @param directory Le répertoire des checkpoints
+     * @param modelName Le nom du modèle
+     */
+    public static void delete(String directory, String modelName) {
+        stateFile(directory, modelName).delete();
+        bestFile(directory, modelName).delete();
+    }
+
+    /**
+     * @param directory Le répertoire des checkpoints
+     * @param modelName Le nom du modèle
+     * @return Le fichier du meilleur réseau du modèle
+     */
+    public static File bestFile(String directory, String modelName) {
+        return new File(directory, modelName + "_best.zip");
+    }
+
+    /**
+     * Lit l'état sauvegardé d'un modèle.
+     *
+     * @param directory Le répertoire des checkpoints
+     * @param modelName Le nom du modèle
+     * @return L'état, ou null si aucun état n'a été sauvegardé
+     * @throws IOException En cas d'erreur de lecture
+     */
+    public static TrainingCheckpoint load(String directory, String modelName) throws IOException {
+        File file = stateFile(directory, modelName);
+        if (!file.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+
+        TrainingCheckpoint checkpoint = new TrainingCheckpoint(directory, modelName);
+        try {
+            checkpoint.epoch = Integer.parseInt(properties.getProperty("epoch"));
+            checkpoint.seed = Long.parseLong(properties.getProperty("seed"));
+            checkpoint.baseRate = Double.parseDouble(properties.getProperty("baseRate"));
+            checkpoint.rate = Double.parseDouble(properties.getProperty("rate"));
+            checkpoint.scheduleBestScore = Double.parseDouble(properties.getProperty("schedule.bestScore"));
+            checkpoint.scheduleEpochsWithoutImprovement = Integer
+                    .parseInt(properties.getProperty("schedule.epochsWithoutImprovement"));
+            checkpoint.bestMSE = Double.parseDouble(properties.getProperty("bestMSE"));
+            checkpoint.referenceMSE = Double.parseDouble(properties.getProperty("earlyStopping.referenceMSE"));
+            checkpoint.epochsWithoutImprovement = Integer
+                    .parseInt(properties.getProperty("earlyStopping.epochsWithoutImprovement"));
+        } catch (NullPointerException | NumberFormatException e) {
+            throw new IOException("État de checkpoint invalide : " + file, e);
+        }
+        checkpoint.modelFile = properties.getProperty("model");
+        checkpoint.bestFile = properties.getProperty("best");
+        checkpoint.modelType = properties.getProperty("modelType");
+        checkpoint.dataset = properties.getProperty("dataset");
+        try {
+            checkpoint.datasetSize = Long.parseLong(properties.getProperty("dataset.size", "-1"));
+        } catch (NumberFormatException e) {
+            throw new IOException("État de checkpoint invalide : " + file, e);
+        }
+        if (checkpoint.modelFile == null) {
+            throw new IOException("État de checkpoint invalide : " + file);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Écrit l'état dans un fichier temporaire puis le renomme, pour qu'une
+     * interruption ne laisse jamais un état partiel.
+     *
+     * @throws IOException En cas d'erreur d'écriture
+     */
+    public void save() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("epoch", Integer.toString(epoch));
+        properties.setProperty("seed", Long.toString(seed));
+        properties.setProperty("baseRate", Double.toString(baseRate));
+        properties.setProperty("rate", Double.toString(rate));
+        properties.setProperty("schedule.bestScore", Double.toString(scheduleBestScore));
+        properties.setProperty("schedule.epochsWithoutImprovement",
+                Integer.toString(scheduleEpochsWithoutImprovement));
+        properties.setProperty("bestMSE", Double.toString(bestMSE));
+        properties.setProperty("earlyStopping.referenceMSE", Double.toString(referenceMSE));
+        properties.setProperty("earlyStopping.epochsWithoutImprovement", Integer.toString(epochsWithoutImprovement));
+        properties.setProperty("model", modelFile);
+        if (modelType != null) {
+            properties.setProperty("modelType", modelType);
+        }
+        if (dataset != null) {
+            properties.setProperty("dataset", dataset);
+            properties.setProperty("dataset.size", Long.toString(datasetSize));
+        }
+        if (bestFile != null) {
+            properties.setProperty("best", bestFile);
+        }
+
+        File file = stateFile(directory.getPath(), modelName);
+        File tmp = new File(directory, file.getName() + ".tmp");
+        directory.mkdirs();
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            properties.store(out, "Reprise de l'entraînement de " + modelName);
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Impossible de renommer " + tmp);
+            }
+        }
+    }
+
+    /**
+     * @return Le réseau à la fin de la dernière epoch sauvegardée, avec
+     *         l'état de son updater
+     * @throws IOException En cas d'erreur de lecture
+     */
+    public MultiLayerNetwork loadModel() throws IOException {
+        return ModelSerializer.restoreMultiLayerNetwork(new File(directory, modelFile), true);
+    }
+
+    /**
+     * @return Le meilleur réseau, ou null si aucun n'a été sauvegardé
+     * @throws IOException En cas d'erreur de lecture
+     */
+    public MultiLayerNetwork loadBestModel() throws IOException {
+        return bestFile == null ? null
+                : ModelSerializer.restoreMultiLayerNetwork(new File(directory, bestFile), true);
+    }
+
+    /**
+     * @return Le nom du modèle
+     */
+    public String getModelName() {
+        return modelName;
+    }
+
+    /**
+     * Enregistre l'entraînement désigné par cet état.
+     *
+     * @param modelType Le type du réseau (CNN ou MLP)
+     * @param dataset   Le fichier du dataset d'entraînement
+     */
+    public void setTraining(String modelType, File dataset) {
+        this.modelType = modelType;
+        this.dataset = dataset.getName();
+        this.datasetSize = dataset.length();
+    }
+
+    /**
+     * Indique si cet état a été sauvegardé par un entraînement du même type
+     * de réseau sur le même dataset. Un état qui ne les précise pas ne
+     * correspond à aucun entraînement.
+     *
+     * @param modelType Le type du réseau (CNN ou MLP)
+     * @param dataset   Le fichier du dataset d'entraînement
+     * @return true si la reprise est possible
+     */
+    public boolean matches(String modelType, File dataset) {
+        return modelType.equals(this.modelType) && dataset.getName().equals(this.dataset)
+                && dataset.length() == datasetSize;
+    }
+
+    /**
+     * @return Une description de l'entraînement désigné, pour les messages
+     */
+    public String describeTraining() {
+        return (modelType == null ? "type inconnu" : modelType) + " sur "
+                + (dataset == null ? "dataset inconnu" : dataset + " (" + datasetSize + " octets)");
+    }
+
+    /**
+     * @return Le nombre d'epochs terminées
+     */
+    public int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * @param epoch Le nombre d'epochs terminées
+     */
+    public void setEpoch(int epoch) {
+        this.epoch = epoch;
+    }
+
+    /**
+     * @return La graine de l'import du dataset
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @param seed La graine de l'import du dataset
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return Le taux d'apprentissage initial
+     */
+    public double getBaseRate() {
+        return baseRate;
+    }
+
+    /**
+     * @return Le taux d'apprentissage courant
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * @return La meilleure MSE vue par la politique du taux d'apprentissage
+     */
+    public double getScheduleBestScore() {
+        return scheduleBestScore;
+    }
+
+    /**
+     * @return Le nombre d'epochs sans amélioration vu par la politique du
+     *         taux d'apprentissage
+     */
+    public int getScheduleEpochsWithoutImprovement() {
+        return scheduleEpochsWithoutImprovement;
+    }
+
+    /**
+     * Enregistre l'état du taux d'apprentissage.
+     *
+     * @param baseRate Le taux initial
+     * @param schedule La politique, dans son état courant
+     */
+    public void setLearningRate(double baseRate, LearningRateSchedule schedule) {
+        this.baseRate = baseRate;
+        this.rate = schedule.getRate();
+        this.scheduleBestScore = schedule.getBestScore();
+        this.scheduleEpochsWithoutImprovement = schedule.getEpochsWithoutImprovement();
+    }
+
+    /**
+     * @return La meilleure MSE de validation
+     */
+    public double getBestMSE() {
+        return bestMSE;
+    }
+
+    /**
+     * @param bestMSE La meilleure MSE de validation
+     */
+    public void setBestMSE(double bestMSE) {
+        this.bestMSE = bestMSE;
+    }
+
+    /**
+     * @return La MSE de référence de l'arrêt anticipé
+     */
+    public double getReferenceMSE() {
+        return referenceMSE;
+    }
+
+    /**
+     * @return Le nombre d'epochs sans amélioration de l'arrêt anticipé
+     */
+    public int getEpochsWithoutImprovement() {
+        return epochsWithoutImprovement;
+    }
+
+    /**
+     * Enregistre les compteurs de l'arrêt anticipé.
+     *
+     * @param referenceMSE             La MSE de référence
+     * @param epochsWithoutImprovement Le nombre d'epochs sans amélioration
+     */
+    public void setEarlyStopping(double referenceMSE, int epochsWithoutImprovement) {
+        this.referenceMSE = referenceMSE;
+        this.epochsWithoutImprovement = epochsWithoutImprovement;
+    }
+
+    /**
+     * @param modelFile Le nom du fichier du réseau courant, dans le
+     *                  répertoire des checkpoints
+     */
+    public void setModelFile(String modelFile) {
+        this.modelFile = modelFile;
+    }
+
+    /**
+     * @return Le nom du fichier du meilleur réseau, ou null
+     */
+    public String getBestFile() {
+        return bestFile;
+    }
+
+    /**
+     * @param bestFile Le nom du fichier du meilleur réseau, dans le
+     *                 répertoire des checkpoints
+     */
+    public void setBestFile(String bestFile) {
+        this.bestFile = bestFile;
+    }
+}
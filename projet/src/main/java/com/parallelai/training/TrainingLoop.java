@@ -0,0 +1,206 @@
+package com.parallelai.training;
+
+import com.parallelai.exec.train.TrainerMetrics;
+import com.parallelai.exec.train.TrainerResult;
+import com.parallelai.training.utils.EpochSeekable;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.optimize.listeners.ScoreIterationListener;
+import org.nd4j.evaluation.regression.RegressionEvaluation;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Boucle d'entraînement commune à {@link DenseTraining} et
+ * {@link CnnTraining} : une epoch d'entraînement puis une évaluation sur
+ * le jeu de validation, en conservant le meilleur modèle.
+ *
+ * Selon les {@link TrainingOptions}, la boucle écrit des checkpoints,
+ * ajuste le taux d'apprentissage après chaque epoch et s'arrête avant
+ * nEpochs lorsque la MSE de validation ne s'améliore plus. Un
+ * entraînement interrompu reprend à l'epoch qui suit son dernier
+ * checkpoint.
+ */
+class TrainingLoop {
+    private final TrainingOptions options;
+    private final String modelType;
+    private final File dataset;
+
+    /**
+     * @param options     Les options d'entraînement
+     * @param modelType   Le type du réseau (CNN ou MLP), enregistré dans les
+     *                    checkpoints
+     * @param datasetPath Le chemin du dataset, enregistré dans les
+     *                    checkpoints
+     */
+    TrainingLoop(TrainingOptions options, String modelType, String datasetPath) {
+        this.options = options;
+        this.modelType = modelType;
+        this.dataset = new File(datasetPath);
+    }
+
+    /**
+     * Entraîne un réseau initialisé, ou reprend l'entraînement désigné par
+     * {@link TrainingOptions#getResumeFrom()}.
+     *
+     * @param model         Le réseau à entraîner, remplacé par celui du
+     *                      checkpoint en cas de reprise
+     * @param trainIterator Les données d'entraînement
+     * @param evalIterator  Les données de validation
+     * @param modelName     Le nom du modèle, repris par les checkpoints
+     * @param nEpochs       Le nombre maximal d'epochs
+     * @return Le meilleur modèle et son évaluation
+     * @throws IOException En cas d'erreur de lecture du checkpoint repris,
+     *                     ou s'il provient d'un autre type de réseau ou d'un
+     *                     autre dataset
+     */
+    TrainerResult run(MultiLayerNetwork model, DataSetIterator trainIterator, DataSetIterator evalIterator,
+            String modelName, int nEpochs) throws IOException {
+        RegressionEvaluation finalEval = null;
+        double bestMSE = Double.MAX_VALUE;
+        ModelSnapshot bestSnapshot = null;
+        boolean bestChanged = false;
+        int startEpoch = 0;
+
+        // Taux d'apprentissage initial, celui de l'updater du réseau
+        LearningRateSchedule schedule = options.getLearningRateSchedule();
+        Double configuredRate = model.getLearningRate(0);
+        double baseRate = configuredRate == null ? 0 : configuredRate;
+        schedule.start(baseRate);
+
+        // Arrêt anticipé : epochs écoulées depuis la dernière amélioration
+        int patience = options.getEarlyStoppingPatience();
+        double minDelta = options.getEarlyStoppingMinDelta();
+        double referenceMSE = Double.MAX_VALUE;
+        int epochsWithoutImprovement = 0;
+
+        // Reprise d'un entraînement interrompu
+        TrainingCheckpoint resume = options.getResumeFrom();
+        if (resume != null) {
+            if (!resume.matches(modelType, dataset)) {
+                throw new IOException("Checkpoint de " + modelName + " incompatible : " + resume.describeTraining()
+                        + ", entraînement demandé : " + modelType + " sur " + dataset.getName());
+            }
+            model = resume.loadModel();
+            MultiLayerNetwork best = resume.loadBestModel();
+            if (best != null) {
+                bestSnapshot = ModelSnapshot.of(best);
+                finalEval = evaluate(best, evalIterator);
+            }
+            bestMSE = resume.getBestMSE();
+            baseRate = resume.getBaseRate();
+            schedule.start(baseRate);
+            schedule.resume(resume.getRate(), resume.getScheduleBestScore(),
+                    resume.getScheduleEpochsWithoutImprovement());
+            referenceMSE = resume.getReferenceMSE();
+            epochsWithoutImprovement = resume.getEpochsWithoutImprovement();
+            startEpoch = resume.getEpoch();
+            if (trainIterator instanceof EpochSeekable) {
+                ((EpochSeekable) trainIterator).seekEpoch(startEpoch);
+            }
+            System.out.println(String.format("Reprise de l'entraînement après l'epoch %d/%d", startEpoch, nEpochs));
+        }
+        double rate = schedule.getRate();
+
+        // Ajout de listeners pour les métriques
+        TrainerMetrics metrics = new TrainerMetrics(nEpochs, startEpoch);
+        metrics.setLearningRate(rate);
+        model.setListeners(metrics, new ScoreIterationListener(10));
+
+        // Entraine le modèle avec évaluation après chaque époque
+        System.out.println("Début de l'entraînement...");
+        CheckpointWriter checkpoints = options.getCheckpointDirectory() == null ? null
+                : new CheckpointWriter(options.getCheckpointDirectory(), modelName);
+
+        // Entraînement sur un ou plusieurs workers selon les options
+        DataParallelTrainer trainer = new DataParallelTrainer(model, options, metrics);
+        for (int i = startEpoch; i < nEpochs; i++) {
+            trainer.fitEpoch(trainIterator);
+
+            // Evalue le modèle
+            RegressionEvaluation eval = evaluate(model, evalIterator);
+
+            // Vérifie si le modèle actuel est meilleur que celui de l'epoch précédente
+            double currentMSE = eval.meanSquaredError(0);
+            if (currentMSE < bestMSE) {
+                bestMSE = currentMSE;
+                // Copie en mémoire du meilleur modèle
+                bestSnapshot = ModelSnapshot.of(model);
+                bestChanged = true;
+                finalEval = eval;
+            }
+
+            // Affiche les métriques
+            System.out.println(String.format("Epoch %d/%d", (i + 1), nEpochs));
+            System.out.println("MSE: " + eval.meanSquaredError(0));
+            System.out.println("RMSE: " + eval.rootMeanSquaredError(0));
+            System.out.println("R²: " + eval.rSquared(0));
+            System.out.println("--------------------");
+
+            trainIterator.reset();
+
+            // Arrêt anticipé si la MSE stagne depuis patience epochs
+            if (currentMSE < referenceMSE - minDelta) {
+                referenceMSE = currentMSE;
+                epochsWithoutImprovement = 0;
+            } else {
+                epochsWithoutImprovement++;
+            }
+            if (patience > 0 && epochsWithoutImprovement >= patience) {
+                metrics.onEarlyStop(epochsWithoutImprovement);
+                break;
+            }
+
+            // Taux d'apprentissage de l'epoch suivante
+            if (configuredRate != null) {
+                double nextRate = schedule.next(i + 1, currentMSE);
+                if (nextRate != rate) {
+                    rate = nextRate;
+                    trainer.setLearningRate(rate);
+                    metrics.setLearningRate(rate);
+                }
+            }
+
+            // Checkpoint périodique, écrit en arrière-plan : l'état permet
+            // de reprendre à l'epoch suivante
+            if (checkpoints != null && (i + 1) % options.getCheckpointEvery() == 0) {
+                TrainingCheckpoint state = new TrainingCheckpoint(options.getCheckpointDirectory(), modelName);
+                state.setEpoch(i + 1);
+                state.setTraining(modelType, dataset);
+                state.setSeed(options.getSeed());
+                state.setLearningRate(baseRate, schedule);
+                state.setBestMSE(bestMSE);
+                state.setEarlyStopping(referenceMSE, epochsWithoutImprovement);
+                checkpoints.write(ModelSnapshot.of(model), bestChanged ? bestSnapshot : null, state);
+                bestChanged = false;
+            }
+        }
+
+        trainer.close();
+        if (checkpoints != null) {
+            checkpoints.close();
+        }
+
+        // Reconstruction du meilleur modèle, sérialisé une seule fois par l'appelant
+        MultiLayerNetwork bestModel = bestSnapshot == null ? null : bestSnapshot.toNetwork();
+
+        // Return le meilleur modèle et son évaluation
+        return new TrainerResult(bestModel, finalEval);
+    }
+
+    /**
+     * Évalue un réseau sur les données de validation, puis les rembobine.
+     */
+    private static RegressionEvaluation evaluate(MultiLayerNetwork model, DataSetIterator evalIterator) {
+        RegressionEvaluation eval = new RegressionEvaluation(1);
+        while (evalIterator.hasNext()) {
+            DataSet ds = evalIterator.next();
+            eval.eval(ds.getLabels(), model.output(ds.getFeatures()));
+        }
+        evalIterator.reset();
+        return eval;
+    }
+}
@@ -0,0 +1,260 @@
+package com.parallelai.training;
+
+import com.parallelai.training.utils.DatasetImporter;
+
+import java.util.Random;
+
+/**
+ * Options d'entraînement communes à {@link DenseTraining} et
+ * {@link CnnTraining}. Les valeurs par défaut reproduisent l'entraînement
+ * historique, avec le préchargement des batchs en plus.
+ */
+public class TrainingOptions {
+    /** Nombre de batchs préparés à l'avance (0 : pas de préchargement) */
+    private int prefetchDepth = 4;
+
+    /** Nombre de threads préparant les batchs */
+    private int prefetchThreads = 1;
+
+    /** Ajout des images symétriques de chaque position d'entraînement */
+    private boolean expandSymmetries = false;
+
+    /** Symétrie aléatoire appliquée à chaque exemple à chaque époque */
+    private boolean randomSymmetries = false;
+
+    /** Lecture du dataset par projection en mémoire */
+    private boolean memoryMapped = false;
+
+    /** Nombre de répliques du réseau entraînées en parallèle */
+    private int workers = 1;
+
+    /** Nombre de batchs entre deux moyennes des paramètres */
+    private int averagingFrequency = 5;
+
+    /** Partage des gradients au lieu de la moyenne des paramètres */
+    private boolean sharedGradients = false;
+
+    /** Répertoire des checkpoints (null : pas de checkpoint) */
+    private String checkpointDirectory = null;
+
+    /** Nombre d'epochs entre deux checkpoints */
+    private int checkpointEvery = 1;
+
+    /** Nombre d'epochs sans amélioration avant l'arrêt (0 : pas d'arrêt anticipé) */
+    private int earlyStoppingPatience = 0;
+
+    /** Amélioration minimale de la MSE de validation prise en compte */
+    private double earlyStoppingMinDelta = 0;
+
+    /** Évolution du taux d'apprentissage au fil des epochs */
+    private LearningRateSchedule learningRateSchedule = LearningRateSchedule.constant();
+
+    /** Graine du mélange et de la séparation du dataset */
+    private long seed = new Random().nextLong();
+
+    /** Entraînement interrompu à reprendre (null : nouvel entraînement) */
+    private TrainingCheckpoint resumeFrom = null;
+
+    /**
+     * Crée un importeur de dataset configuré selon ces options.
+     *
+     * @return L'importeur configuré
+     */
+    public DatasetImporter newImporter() {
+        DatasetImporter importer = new DatasetImporter();
+        // En parallèle, plusieurs batchs sont utilisés en même temps : ils ne
+        // doivent pas partager leurs tableaux, ce que garantit le préchargement
+        int depth = workers > 1 ? Math.max(prefetchDepth, 2 * workers) : prefetchDepth;
+        importer.setPrefetch(depth, prefetchThreads);
+        importer.setExpandSymmetries(expandSymmetries);
+        importer.setRandomSymmetries(randomSymmetries);
+        importer.setMemoryMapped(memoryMapped);
+        importer.setSeed(seed);
+        return importer;
+    }
+
+    /**
+     * Règle le préchargement des batchs d'entraînement.
+     *
+     * @param queueDepth  Nombre de batchs préparés à l'avance (0 pour
+     *                    désactiver)
+     * @param nbProducers Nombre de threads producteurs
+     */
+    public void setPrefetch(int queueDepth, int nbProducers) {
+        this.prefetchDepth = Math.max(0, queueDepth);
+        this.prefetchThreads = Math.max(1, nbProducers);
+    }
+
+    /**
+     * @param expandSymmetries true pour ajouter les images symétriques de
+     *                         chaque position d'entraînement
+     */
+    public void setExpandSymmetries(boolean expandSymmetries) {
+        this.expandSymmetries = expandSymmetries;
+    }
+
+    /**
+     * @param randomSymmetries true pour présenter chaque exemple sous une
+     *                         symétrie aléatoire (nécessite le
+     *                         préchargement)
+     */
+    public void setRandomSymmetries(boolean randomSymmetries) {
+        this.randomSymmetries = randomSymmetries;
+    }
+
+    /**
+     * @param memoryMapped true pour lire le dataset par projection en mémoire
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * Active l'entraînement parallèle : le réseau est répliqué sur plusieurs
+     * workers qui se partagent les batchs, et les paramètres des répliques
+     * sont moyennés à intervalle régulier.
+     *
+     * @param workers            Nombre de workers (1 : entraînement simple)
+     * @param averagingFrequency Nombre de batchs traités par chaque worker
+     *                           entre deux moyennes
+     */
+    public void setDataParallel(int workers, int averagingFrequency) {
+        this.workers = Math.max(1, workers);
+        this.averagingFrequency = Math.max(1, averagingFrequency);
+    }
+
+    /**
+     * @param sharedGradients true pour partager les gradients entre workers
+     *                        à chaque batch au lieu de moyenner les
+     *                        paramètres
+     */
+    public void setSharedGradients(boolean sharedGradients) {
+        this.sharedGradients = sharedGradients;
+    }
+
+    /**
+     * @return Le nombre de workers de l'entraînement parallèle
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * @return Le nombre de batchs entre deux moyennes des paramètres
+     */
+    public int getAveragingFrequency() {
+        return averagingFrequency;
+    }
+
+    /**
+     * @return true si les gradients sont partagés au lieu des paramètres
+     */
+    public boolean isSharedGradients() {
+        return sharedGradients;
+    }
+
+    /**
+     * Active l'écriture périodique de checkpoints sur disque, faite en
+     * arrière-plan pendant l'entraînement.
+     *
+     * @param directory   Répertoire des checkpoints (null pour désactiver)
+     * @param everyEpochs Nombre d'epochs entre deux checkpoints
+     */
+    public void setCheckpoints(String directory, int everyEpochs) {
+        this.checkpointDirectory = directory;
+        this.checkpointEvery = Math.max(1, everyEpochs);
+    }
+
+    /**
+     * @return Le répertoire des checkpoints, ou null s'ils sont désactivés
+     */
+    public String getCheckpointDirectory() {
+        return checkpointDirectory;
+    }
+
+    /**
+     * @return Le nombre d'epochs entre deux checkpoints
+     */
+    public int getCheckpointEvery() {
+        return checkpointEvery;
+    }
+
+    /**
+     * Active l'arrêt anticipé : l'entraînement s'arrête lorsque la MSE de
+     * validation ne s'est pas améliorée d'au moins minDelta pendant
+     * patience epochs consécutives.
+     *
+     * @param patience Nombre d'epochs sans amélioration tolérées (0 pour
+     *                 désactiver)
+     * @param minDelta Amélioration minimale de la MSE prise en compte
+     */
+    public void setEarlyStopping(int patience, double minDelta) {
+        this.earlyStoppingPatience = Math.max(0, patience);
+        this.earlyStoppingMinDelta = Math.max(0, minDelta);
+    }
+
+    /**
+     * @return Le nombre d'epochs sans amélioration avant l'arrêt, 0 si
+     *         l'arrêt anticipé est désactivé
+     */
+    public int getEarlyStoppingPatience() {
+        return earlyStoppingPatience;
+    }
+
+    /**
+     * @return L'amélioration minimale de la MSE prise en compte
+     */
+    public double getEarlyStoppingMinDelta() {
+        return earlyStoppingMinDelta;
+    }
+
+    /**
+     * @param schedule L'évolution du taux d'apprentissage (null pour un taux
+     *                 constant)
+     */
+    public void setLearningRateSchedule(LearningRateSchedule schedule) {
+        this.learningRateSchedule = schedule == null ? LearningRateSchedule.constant() : schedule;
+    }
+
+    /**
+     * @return L'évolution du taux d'apprentissage
+     */
+    public LearningRateSchedule getLearningRateSchedule() {
+        return learningRateSchedule;
+    }
+
+    /**
+     * @param seed La graine du mélange et de la séparation du dataset
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return La graine du mélange et de la séparation du dataset
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Reprend un entraînement interrompu : le réseau et les compteurs sont
+     * restaurés depuis le checkpoint, et le dataset est séparé et mélangé
+     * avec la graine d'origine.
+     *
+     * @param checkpoint L'état sauvegardé (null pour un nouvel entraînement)
+     */
+    public void setResumeFrom(TrainingCheckpoint checkpoint) {
+        this.resumeFrom = checkpoint;
+        if (checkpoint != null) {
+            this.seed = checkpoint.getSeed();
+        }
+    }
+
+    /**
+     * @return L'entraînement à reprendre, ou null
+     */
+    public TrainingCheckpoint getResumeFrom() {
+        return resumeFrom;
+    }
+}
@@ -0,0 +1,144 @@
+package com.parallelai.training.utils;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Itérateur de mini-batchs sur un {@link BoardDataset} chargé en mémoire.
+ * Tous les exemples sont écrits une seule fois dans un tableau [N,1,8,8]
+ * et un tableau [N,1], créés chacun par un unique Nd4j.create : chaque
+ * batch est une vue sur une plage de lignes, sans copie ni allocation
+ * native par exemple.
+ *
+ * Comme ListDataSetIterator, l'ordre des exemples est celui du dataset et
+ * n'est pas re-mélangé par reset(). Un pré-processeur éventuel modifie les
+ * données sur place.
+ */
+public class ArrayDatasetIterator implements DataSetIterator {
+    private static final int BOARD_SIZE = 8;
+    private static final int CELLS = BOARD_SIZE * BOARD_SIZE;
+
+    private final INDArray features;
+    private final INDArray labels;
+    private final int numExamples;
+    private final int batchSize;
+    private int cursor;
+
+    private DataSetPreProcessor preProcessor;
+
+    /**
+     * @param dataset   Les exemples, dans l'ordre de parcours
+     * @param batchSize La taille des mini-batchs
+     */
+    public ArrayDatasetIterator(BoardDataset dataset, int batchSize) {
+        this.numExamples = dataset.size();
+        this.batchSize = batchSize;
+
+        if ((long) numExamples * CELLS > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Dataset trop grand pour un tableau unique : "
+                    + numExamples + " exemples");
+        }
+        float[] cells = new float[numExamples * CELLS];
+        float[] values = new float[numExamples];
+        for (int i = 0; i < numExamples; i++) {
+            int base = i * CELLS;
+            for (long bits = dataset.getBlack(i); bits != 0; bits &= bits - 1) {
+                cells[base + Long.numberOfTrailingZeros(bits)] = 1f;
+            }
+            for (long bits = dataset.getWhite(i); bits != 0; bits &= bits - 1) {
+                cells[base + Long.numberOfTrailingZeros(bits)] = -1f;
+            }
+            values[i] = dataset.getLabel(i);
+        }
+
+        this.features = Nd4j.create(cells, new long[] { numExamples, 1, BOARD_SIZE, BOARD_SIZE }, 'c');
+        this.labels = Nd4j.create(values, new long[] { numExamples, 1 }, 'c');
+    }
+
+    /**
+     * @return Le nombre d'exemples parcourus par époque
+     */
+    public int numExamples() {
+        return numExamples;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return cursor < numExamples;
+    }
+
+    @Override
+    public DataSet next() {
+        return next(batchSize);
+    }
+
+    @Override
+    public DataSet next(int num) {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int end = Math.min(cursor + num, numExamples);
+        DataSet batch = new DataSet(
+                features.get(NDArrayIndex.interval(cursor, end), NDArrayIndex.all(), NDArrayIndex.all(),
+                        NDArrayIndex.all()),
+                labels.get(NDArrayIndex.interval(cursor, end), NDArrayIndex.all()));
+        cursor = end;
+
+        if (preProcessor != null) {
+            preProcessor.preProcess(batch);
+        }
+        return batch;
+    }
+
+    @Override
+    public void reset() {
+        cursor = 0;
+    }
+
+    @Override
+    public int inputColumns() {
+        return CELLS;
+    }
+
+    @Override
+    public int totalOutcomes() {
+        return 1;
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean asyncSupported() {
+        return true;
+    }
+
+    @Override
+    public int batch() {
+        return batchSize;
+    }
+
+    @Override
+    public void setPreProcessor(DataSetPreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    @Override
+    public DataSetPreProcessor getPreProcessor() {
+        return preProcessor;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return null;
+    }
+}
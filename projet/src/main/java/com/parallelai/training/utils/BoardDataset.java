@@ -0,0 +1,220 @@
+package com.parallelai.training.utils;
+
+import com.parallelai.export.utilities.BinaryStateReader;
+import com.parallelai.game.Board;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Dataset chargé en mémoire sous forme compacte : deux bitboards et une
+ * valeur cible par exemple, soit 20 octets au lieu d'un DataSet et de deux
+ * tableaux natifs par ligne.
+ *
+ * Le mélange, la séparation et l'augmentation par symétrie se font sur ces
+ * tableaux ; la conversion en tableaux de réseau n'a lieu qu'une fois, dans
+ * {@link ArrayDatasetIterator}.
+ */
+public class BoardDataset implements BoardSource {
+    private long[] blacks;
+    private long[] whites;
+    private float[] labels;
+    private int size;
+
+    /**
+     * Crée un dataset vide.
+     *
+     * @param capacity Nombre d'exemples attendus
+     */
+    public BoardDataset(int capacity) {
+        capacity = Math.max(capacity, 16);
+        this.blacks = new long[capacity];
+        this.whites = new long[capacity];
+        this.labels = new float[capacity];
+    }
+
+    /**
+     * Charge un fichier de dataset au format CSV ou binaire, reconnu d'après
+     * le nombre magique en tête du fichier.
+     *
+     * @param filepath Le chemin du fichier à charger
+     * @return Le dataset chargé, dans l'ordre du fichier
+     * @throws IOException Si une erreur survient lors de la lecture du fichier
+     */
+    public static BoardDataset load(String filepath) throws IOException {
+        if (BinaryStateReader.isBinary(filepath)) {
+            return loadBinary(filepath);
+        }
+        return CsvDatasetParser.parse(filepath);
+    }
+
+    private static BoardDataset loadBinary(String filepath) throws IOException {
+        long rows = BinaryStateReader.rowCount(filepath);
+        if (rows > Integer.MAX_VALUE - 8) {
+            throw new IOException("Trop de lignes pour un dataset en mémoire : " + rows);
+        }
+        BoardDataset dataset = new BoardDataset((int) rows);
+        BinaryStateReader.read(filepath, (black, white, label, sum, count) -> dataset.add(black, white, label));
+        return dataset;
+    }
+
+    /**
+     * Concatène des datasets dans l'ordre donné.
+     *
+     * @param parts Les datasets à concaténer
+     * @return Un nouveau dataset contenant tous les exemples
+     */
+    public static BoardDataset concat(List<BoardDataset> parts) {
+        long total = 0;
+        for (BoardDataset part : parts) {
+            total += part.size;
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Capacité maximale du dataset atteinte");
+        }
+
+        BoardDataset dataset = new BoardDataset((int) total);
+        for (BoardDataset part : parts) {
+            System.arraycopy(part.blacks, 0, dataset.blacks, dataset.size, part.size);
+            System.arraycopy(part.whites, 0, dataset.whites, dataset.size, part.size);
+            System.arraycopy(part.labels, 0, dataset.labels, dataset.size, part.size);
+            dataset.size += part.size;
+        }
+        return dataset;
+    }
+
+    /**
+     * Ajoute un exemple.
+     *
+     * @param black Le bitboard des pions noirs
+     * @param white Le bitboard des pions blancs
+     * @param label La valeur cible
+     */
+    public void add(long black, long white, float label) {
+        if (size == labels.length) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, size * 2L);
+            if (capacity == size) {
+                throw new IllegalStateException("Capacité maximale du dataset atteinte");
+            }
+            blacks = Arrays.copyOf(blacks, capacity);
+            whites = Arrays.copyOf(whites, capacity);
+            labels = Arrays.copyOf(labels, capacity);
+        }
+        blacks[size] = black;
+        whites[size] = white;
+        labels[size] = label;
+        size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public float read(int row, long[] board) {
+        board[0] = blacks[row];
+        board[1] = whites[row];
+        return labels[row];
+    }
+
+    /**
+     * @param i L'indice de l'exemple
+     * @return Le bitboard des pions noirs de l'exemple
+     */
+    public long getBlack(int i) {
+        return blacks[i];
+    }
+
+    /**
+     * @param i L'indice de l'exemple
+     * @return Le bitboard des pions blancs de l'exemple
+     */
+    public long getWhite(int i) {
+        return whites[i];
+    }
+
+    /**
+     * @param i L'indice de l'exemple
+     * @return La valeur cible de l'exemple
+     */
+    public float getLabel(int i) {
+        return labels[i];
+    }
+
+    /**
+     * Mélange les exemples sur place.
+     *
+     * @param random Le générateur utilisé
+     */
+    public void shuffle(Random random) {
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long b = blacks[i];
+            blacks[i] = blacks[j];
+            blacks[j] = b;
+            long w = whites[i];
+            whites[i] = whites[j];
+            whites[j] = w;
+            float l = labels[i];
+            labels[i] = labels[j];
+            labels[j] = l;
+        }
+    }
+
+    /**
+     * Copie une plage d'exemples dans un nouveau dataset.
+     *
+     * @param from Premier exemple (inclus)
+     * @param to   Dernier exemple (exclu)
+     * @return Le sous-ensemble
+     */
+    public BoardDataset subset(int from, int to) {
+        BoardDataset subset = new BoardDataset(to - from);
+        System.arraycopy(blacks, from, subset.blacks, 0, to - from);
+        System.arraycopy(whites, from, subset.whites, 0, to - from);
+        System.arraycopy(labels, from, subset.labels, 0, to - from);
+        subset.size = to - from;
+        return subset;
+    }
+
+    /**
+     * Ajoute à chaque exemple ses images distinctes par les 8 symétries du
+     * plateau. La valeur cible est conservée : une position et ses images
+     * ont la même valeur de jeu. Les positions symétriques ne produisent pas
+     * de doublons.
+     *
+     * @param random Le générateur utilisé pour mélanger le résultat
+     * @return Un nouveau dataset mélangé contenant les exemples et leurs images
+     */
+    public BoardDataset expandSymmetries(Random random) {
+        BoardDataset expanded = new BoardDataset((int) Math.min(Integer.MAX_VALUE - 8,
+                (long) size * Board.NB_SYMMETRIES));
+        long[] seenBlack = new long[Board.NB_SYMMETRIES];
+        long[] seenWhite = new long[Board.NB_SYMMETRIES];
+
+        for (int i = 0; i < size; i++) {
+            int nbSeen = 0;
+            for (int symmetry = 0; symmetry < Board.NB_SYMMETRIES; symmetry++) {
+                long b = Board.transform(blacks[i], symmetry);
+                long w = Board.transform(whites[i], symmetry);
+                boolean duplicate = false;
+                for (int k = 0; k < nbSeen && !duplicate; k++) {
+                    duplicate = seenBlack[k] == b && seenWhite[k] == w;
+                }
+                if (duplicate) {
+                    continue;
+                }
+                seenBlack[nbSeen] = b;
+                seenWhite[nbSeen] = w;
+                nbSeen++;
+                expanded.add(b, w, labels[i]);
+            }
+        }
+
+        expanded.shuffle(random);
+        return expanded;
+    }
+}
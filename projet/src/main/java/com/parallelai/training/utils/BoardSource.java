@@ -0,0 +1,22 @@
+package com.parallelai.training.utils;
+
+/**
+ * Source d'exemples d'entraînement accessibles par indice : un plateau
+ * (deux bitboards) et sa valeur cible.
+ * Les lectures doivent pouvoir être faites par plusieurs threads à la fois.
+ */
+public interface BoardSource {
+    /**
+     * @return Le nombre d'exemples
+     */
+    int size();
+
+    /**
+     * Lit un exemple.
+     *
+     * @param row   L'indice de l'exemple
+     * @param board Reçoit les bitboards du plateau : [0] noirs, [1] blancs
+     * @return La valeur cible de l'exemple
+     */
+    float read(int row, long[] board);
+}
@@ -0,0 +1,291 @@
+package com.parallelai.training.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Analyse parallèle des datasets CSV.
+ *
+ * Le fichier est découpé en morceaux alignés sur les fins de ligne, chaque
+ * morceau est projeté en mémoire et analysé par un thread du pool, puis les
+ * résultats sont concaténés dans l'ordre du fichier.
+ *
+ * L'analyse ne passe ni par String ni par Double.parseDouble : les cases ne
+ * prennent que les valeurs 1.0, -1.0 et 0.0, dont seul le signe compte, et
+ * la valeur cible est un décimal simple lu chiffre par chiffre.
+ */
+public class CsvDatasetParser {
+    /** Nombre de morceaux par thread, pour équilibrer la charge */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /** Taille maximale d'un morceau projeté */
+    private static final long MAX_CHUNK_SIZE = 1L << 29;
+
+    private CsvDatasetParser() {
+    }
+
+    /**
+     * Analyse un fichier CSV avec un thread par cœur disponible.
+     *
+     * @param filepath Le chemin du fichier CSV
+     * @return Le dataset, dans l'ordre du fichier
+     * @throws IOException Si le fichier est illisible ou contient une ligne
+     *                     invalide
+     */
+    public static BoardDataset parse(String filepath) throws IOException {
+        return parse(filepath, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Analyse un fichier CSV en parallèle.
+     * Le fichier doit contenir au moins 65 colonnes : 64 pour la grille 8x8
+     * (1 noir, -1 blanc, 0 vide) puis la valeur cible. Une éventuelle ligne
+     * d'en-tête non numérique est ignorée, ainsi que les lignes vides.
+     *
+     * @param filepath  Le chemin du fichier CSV
+     * @param nbThreads Le nombre de threads d'analyse
+     * @return Le dataset, dans l'ordre du fichier
+     * @throws IOException Si le fichier est illisible ou contient une ligne
+     *                     invalide
+     */
+    public static BoardDataset parse(String filepath, int nbThreads) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long nbChunks = Math.max((long) nbThreads * CHUNKS_PER_THREAD, (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+            nbChunks = Math.max(1, Math.min(nbChunks, size / 4096 + 1));
+
+            // Bornes des morceaux, avancées jusqu'au début de la ligne suivante
+            long[] bounds = new long[(int) nbChunks + 1];
+            for (int i = 1; i < nbChunks; i++) {
+                bounds[i] = Math.max(bounds[i - 1], alignToLine(channel, size * i / nbChunks));
+            }
+            bounds[(int) nbChunks] = size;
+
+            if (nbChunks == 1 || nbThreads <= 1) {
+                BoardDataset dataset = new BoardDataset(1024);
+                for (int i = 0; i < nbChunks; i++) {
+                    parseChunk(channel, bounds[i], bounds[i + 1], i == 0, dataset);
+                }
+                return dataset;
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+            try {
+                List<Future<BoardDataset>> futures = new ArrayList<>();
+                for (int i = 0; i < nbChunks; i++) {
+                    long start = bounds[i];
+                    long end = bounds[i + 1];
+                    boolean first = i == 0;
+                    futures.add(executor.submit(() -> {
+                        BoardDataset chunk = new BoardDataset((int) ((end - start) / 200));
+                        parseChunk(channel, start, end, first, chunk);
+                        return chunk;
+                    }));
+                }
+
+                List<BoardDataset> chunks = new ArrayList<>(futures.size());
+                for (Future<BoardDataset> future : futures) {
+                    chunks.add(future.get());
+                }
+                return BoardDataset.concat(chunks);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Erreur lors de l'analyse de " + filepath, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Analyse de " + filepath + " interrompue", e);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Renvoie la position du début de la première ligne commençant à
+     * partir de pos (pos lui-même s'il suit une fin de ligne).
+     */
+    private static long alignToLine(FileChannel channel, long pos) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(4096);
+        long offset = pos - 1;
+        while (true) {
+            window.clear();
+            int read = channel.read(window, offset);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * Analyse les lignes d'un morceau et les ajoute au dataset.
+     */
+    private static void parseChunk(FileChannel channel, long start, long end, boolean firstChunk,
+            BoardDataset dataset) throws IOException {
+        if (end <= start) {
+            return;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        long[] board = new long[2];
+        int limit = buffer.limit();
+        int pos = 0;
+
+        if (firstChunk && !isNumeric(buffer.get(0))) {
+            pos = nextLine(buffer, 0); // Ligne d'en-tête
+        }
+
+        while (pos < limit) {
+            byte c = buffer.get(pos);
+            if (c == '\n' || c == '\r') {
+                pos++;
+                continue;
+            }
+            int lineEnd = nextLine(buffer, pos);
+            try {
+                int labelPos = parseCells(buffer, pos, lineEnd, board);
+                dataset.add(board[0], board[1], parseValue(buffer, labelPos));
+            } catch (NumberFormatException e) {
+                throw new IOException("Ligne invalide à la position " + (start + pos) + " : " + e.getMessage(), e);
+            }
+            pos = lineEnd;
+        }
+    }
+
+    private static boolean isNumeric(byte c) {
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+    }
+
+    /**
+     * @return La position suivant la fin de la ligne commençant à pos
+     */
+    private static int nextLine(ByteBuffer buffer, int pos) {
+        int limit = buffer.limit();
+        while (pos < limit && buffer.get(pos) != '\n') {
+            pos++;
+        }
+        return Math.min(pos + 1, limit);
+    }
+
+    /**
+     * Lit les 64 cases d'une ligne dans board ([0] noirs, [1] blancs).
+     * Les cases valent 1.0 (noir), -1.0 (blanc) ou 0.0 (vide) : seul le
+     * signe de la valeur compte.
+     *
+     * @param buffer Le tampon contenant la ligne
+     * @param pos    La position du début de la ligne
+     * @param limit  La position de fin de la ligne
+     * @param board  Reçoit les bitboards du plateau
+     * @return La position de la colonne suivant les cases
+     * @throws NumberFormatException Si la ligne a moins de 65 colonnes
+     */
+    static int parseCells(ByteBuffer buffer, int pos, int limit, long[] board) {
+        long black = 0;
+        long white = 0;
+        for (int i = 0; i < 64; i++) {
+            boolean negative = pos < limit && buffer.get(pos) == '-';
+            boolean nonZero = false;
+            byte c;
+            while (pos < limit && (c = buffer.get(pos)) != ',') {
+                if (c == '\n') {
+                    pos = limit;
+                    break;
+                }
+                nonZero |= c >= '1' && c <= '9';
+                pos++;
+            }
+            if (pos >= limit) {
+                throw new NumberFormatException("ligne incomplète (" + i + " cases)");
+            }
+            pos++;
+            if (nonZero) {
+                if (negative) {
+                    white |= 1L << i;
+                } else {
+                    black |= 1L << i;
+                }
+            }
+        }
+        board[0] = black;
+        board[1] = white;
+        return pos;
+    }
+
+    /**
+     * Analyse un nombre décimal simple ([-]entier[.décimales]) terminé par
+     * une virgule ou une fin de ligne. Les autres écritures (exposant...)
+     * sont confiées à Float.parseFloat.
+     *
+     * @param buffer Le tampon contenant le nombre
+     * @param pos    La position du début du nombre
+     * @return La valeur lue
+     * @throws NumberFormatException Si le texte n'est pas un nombre
+     */
+    static float parseValue(ByteBuffer buffer, int pos) {
+        int start = pos;
+        int limit = buffer.limit();
+        boolean negative = false;
+        if (pos < limit && buffer.get(pos) == '-') {
+            negative = true;
+            pos++;
+        }
+
+        long mantissa = 0;
+        int decimals = 0;
+        boolean fraction = false;
+        int digits = 0;
+        while (pos < limit) {
+            byte c = buffer.get(pos);
+            if (c >= '0' && c <= '9') {
+                if (++digits > 18) {
+                    return parseSlow(buffer, start);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (fraction) {
+                    decimals++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else if (c == ',' || c == '\n' || c == '\r') {
+                break;
+            } else {
+                return parseSlow(buffer, start);
+            }
+            pos++;
+        }
+        if (digits == 0) {
+            return parseSlow(buffer, start);
+        }
+
+        double value = mantissa / Math.pow(10, decimals);
+        return (float) (negative ? -value : value);
+    }
+
+    private static float parseSlow(ByteBuffer buffer, int start) {
+        StringBuilder text = new StringBuilder();
+        for (int pos = start; pos < buffer.limit(); pos++) {
+            byte c = buffer.get(pos);
+            if (c == ',' || c == '\n' || c == '\r') {
+                break;
+            }
+            text.append((char) c);
+        }
+        return Float.parseFloat(text.toString().trim());
+    }
+}
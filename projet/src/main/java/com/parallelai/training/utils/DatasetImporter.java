@@ -1,23 +1,105 @@
 package com.parallelai.training.utils;
 
-import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.dataset.DataSet;
-import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
-import org.deeplearning4j.datasets.iterator.impl.ListDataSetIterator;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Random;
 
 /**
  * Classe utilitaire pour importer des données d'entraînement à partir de
- * fichiers CSV.
+ * fichiers CSV ou binaires.
  * Cette classe est spécialement conçue pour traiter un plateau de 8x8.
  */
 public class DatasetImporter {
-    private static final int BOARD_SIZE = 8;
+    /**
+     * Si vrai, chaque position d'entraînement est ré-expandée en ses images
+     * distinctes par rotation/réflexion (utile pour un dataset exporté en
+     * mode canonique).
+     */
+    private boolean expandSymmetries = false;
+
+    /**
+     * Si vrai, le fichier est projeté en mémoire et les batchs sont lus à la
+     * demande au lieu de charger tout le dataset dans le tas.
+     */
+    private boolean memoryMapped = false;
+
+    /** Générateur utilisé pour le mélange des datasets */
+    private final Random random = new Random();
+
+    /**
+     * Nombre de batchs d'entraînement préparés à l'avance (0 : pas de
+     * préchargement)
+     */
+    private int prefetchDepth = 0;
+
+    /** Nombre de threads préparant les batchs d'entraînement */
+    private int prefetchThreads = 1;
+
+    /** Si vrai, chaque exemple préchargé reçoit une symétrie aléatoire */
+    private boolean randomSymmetries = false;
+
+    /**
+     * Active ou désactive l'augmentation des données par symétrie.
+     * Seules les données d'entraînement sont augmentées : l'ensemble
+     * d'évaluation reste celui du fichier.
+     *
+     * @param expandSymmetries true pour ajouter les images symétriques
+     */
+    public void setExpandSymmetries(boolean expandSymmetries) {
+        this.expandSymmetries = expandSymmetries;
+    }
+
+    /**
+     * Fixe la graine du mélange, de la séparation entraînement/évaluation
+     * et de l'augmentation : deux imports de même graine produisent les
+     * mêmes itérateurs.
+     *
+     * @param seed La graine
+     */
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    /**
+     * Active ou désactive la lecture du dataset par projection en mémoire.
+     * La mémoire utilisée ne dépend alors plus de la taille du fichier, au
+     * prix d'une analyse des lignes à chaque époque pour un fichier CSV
+     * (le format binaire n'a rien à analyser).
+     *
+     * @param memoryMapped true pour lire le dataset par projection en mémoire
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * Active le préchargement des batchs d'entraînement : des threads
+     * producteurs préparent les batchs suivants pendant que le réseau
+     * traite le batch courant, et l'ordre des exemples est re-mélangé à
+     * chaque époque. Les données d'évaluation ne sont pas concernées.
+     *
+     * @param queueDepth  Nombre de batchs préparés à l'avance (0 pour
+     *                    désactiver)
+     * @param nbProducers Nombre de threads producteurs
+     */
+    public void setPrefetch(int queueDepth, int nbProducers) {
+        this.prefetchDepth = Math.max(0, queueDepth);
+        this.prefetchThreads = Math.max(1, nbProducers);
+    }
+
+    /**
+     * Active l'augmentation à la volée : à chaque époque, chaque exemple
+     * d'entraînement est présenté sous une de ses 8 symétries, tirée au
+     * hasard. Contrairement à {@link #setExpandSymmetries}, la taille d'une
+     * époque ne change pas. Nécessite le préchargement.
+     *
+     * @param randomSymmetries true pour tirer une symétrie par exemple
+     */
+    public void setRandomSymmetries(boolean randomSymmetries) {
+        this.randomSymmetries = randomSymmetries;
+    }
 
     /**
      * Importe un dataset à partir d'un fichier CSV et le convertit en
@@ -30,49 +112,24 @@ public class DatasetImporter {
      * @throws IOException Si une erreur survient lors de la lecture du fichier
      */
     public DataSetIterator importDataset(String filepath, int batchSize) throws IOException {
-        List<DataSet> dataset = loadDataFromCsv(filepath);
-        return new ListDataSetIterator<>(dataset, batchSize);
-    }
-
-    /**
-     * Charge les données depuis un fichier CSV et les convertit en DataSet
-     * compatible.
-     * Le fichier doit contenir 65 colonnes : 64 pour la grille 8x8 et 1 pour la
-     * valeur cible.
-     *
-     * @param filepath Le chemin du fichier CSV à charger
-     * @return Une liste de DataSet contenant les données chargées et mélangées
-     * @throws IOException Si une erreur survient lors de la lecture du fichier
-     */
-    private List<DataSet> loadDataFromCsv(String filepath) throws IOException {
-        List<DataSet> dataset = new ArrayList<>();
-
-        try (BufferedReader br = new BufferedReader(new FileReader(filepath))) {
-            String line;
-            // Ignorer le header si il existe
-            br.readLine();
-
-            while ((line = br.readLine()) != null) {
-                String[] values = line.split(",");
-
-                // Créer un tableau d'input (8x8x1)
-                INDArray input = Nd4j.zeros(1, 1, BOARD_SIZE, BOARD_SIZE);
-                for (int i = 0; i < 64; i++) {
-                    int row = i / BOARD_SIZE;
-                    int col = i % BOARD_SIZE;
-                    input.putScalar(new int[] { 0, 0, row, col }, Double.parseDouble(values[i]));
-                }
-
-                // Créer un scalaire d'output (une seule valeur entre 0-1)
-                INDArray output = Nd4j.zeros(1, 1);
-                output.putScalar(0, Double.parseDouble(values[64]));
-
-                dataset.add(new DataSet(input, output));
+        if (memoryMapped) {
+            MappedDataset dataset = MappedDataset.open(filepath);
+            if (prefetchDepth > 0) {
+                return prefetching(dataset, allRows(dataset.size()), batchSize, expandSymmetries);
             }
+            return new MappedDatasetIterator(dataset, allRows(dataset.size()), batchSize, expandSymmetries, true,
+                    random.nextLong());
         }
 
-        Collections.shuffle(dataset);
-        return dataset;
+        BoardDataset dataset = BoardDataset.load(filepath);
+        if (prefetchDepth > 0) {
+            return prefetching(dataset, allRows(dataset.size()), batchSize, expandSymmetries);
+        }
+        dataset.shuffle(random);
+        if (expandSymmetries) {
+            dataset = dataset.expandSymmetries(random);
+        }
+        return new ArrayDatasetIterator(dataset, batchSize);
     }
 
     /**
@@ -89,17 +146,71 @@ public class DatasetImporter {
      * @throws IOException Si une erreur survient lors de la lecture du fichier
      */
     public DataSetIterator[] splitDataset(String datasetPath, int batchSize, double trainPercent) throws IOException {
-        List<DataSet> dataset = loadDataFromCsv(datasetPath);
-        Collections.shuffle(dataset);
+        if (memoryMapped) {
+            return splitMappedDataset(datasetPath, batchSize, trainPercent);
+        }
+
+        BoardDataset dataset = BoardDataset.load(datasetPath);
+        dataset.shuffle(random);
 
         int numTrain = (int) (dataset.size() * trainPercent);
 
-        List<DataSet> trainData = dataset.subList(0, numTrain);
-        List<DataSet> evalData = dataset.subList(numTrain, dataset.size());
+        BoardDataset trainData = dataset.subset(0, numTrain);
+        BoardDataset evalData = dataset.subset(numTrain, dataset.size());
+
+        if (prefetchDepth > 0) {
+            return new DataSetIterator[] {
+                    prefetching(trainData, allRows(trainData.size()), batchSize, expandSymmetries),
+                    new ArrayDatasetIterator(evalData, batchSize)
+            };
+        }
+
+        // Augmenter après la séparation pour qu'aucune image d'une position
+        // d'évaluation ne se retrouve dans l'entraînement
+        if (expandSymmetries) {
+            trainData = trainData.expandSymmetries(random);
+        }
 
         return new DataSetIterator[] {
-                new ListDataSetIterator<>(trainData, batchSize),
-                new ListDataSetIterator<>(evalData, batchSize)
+                new ArrayDatasetIterator(trainData, batchSize),
+                new ArrayDatasetIterator(evalData, batchSize)
         };
     }
+
+    /**
+     * Version projetée en mémoire de {@link #splitDataset} : seuls les
+     * indices des lignes sont mélangés puis répartis entre entraînement et
+     * évaluation.
+     */
+    private DataSetIterator[] splitMappedDataset(String datasetPath, int batchSize, double trainPercent)
+            throws IOException {
+        MappedDataset dataset = MappedDataset.open(datasetPath);
+        int[] rows = allRows(dataset.size());
+        Examples.shuffle(rows, random);
+
+        int numTrain = (int) (rows.length * trainPercent);
+        int[] trainRows = Arrays.copyOfRange(rows, 0, numTrain);
+        int[] evalRows = Arrays.copyOfRange(rows, numTrain, rows.length);
+
+        DataSetIterator trainIterator = prefetchDepth > 0
+                ? prefetching(dataset, trainRows, batchSize, expandSymmetries)
+                : new MappedDatasetIterator(dataset, trainRows, batchSize, expandSymmetries, true, random.nextLong());
+        return new DataSetIterator[] {
+                trainIterator,
+                new MappedDatasetIterator(dataset, evalRows, batchSize, false, false, 0)
+        };
+    }
+
+    private DataSetIterator prefetching(BoardSource source, int[] rows, int batchSize, boolean expand) {
+        return new PrefetchingDatasetIterator(source, rows, batchSize, expand, randomSymmetries, prefetchDepth,
+                prefetchThreads, random.nextLong());
+    }
+
+    private static int[] allRows(int size) {
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = i;
+        }
+        return rows;
+    }
 }
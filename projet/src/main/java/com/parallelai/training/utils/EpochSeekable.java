@@ -0,0 +1,17 @@
+package com.parallelai.training.utils;
+
+/**
+ * Itérateur dont l'ordre de parcours ne dépend que de sa graine et du
+ * numéro d'époque. Une reprise d'entraînement le replace à l'époque où
+ * l'entraînement interrompu s'était arrêté, avec le même ordre d'exemples.
+ */
+public interface EpochSeekable {
+    /**
+     * Abandonne l'époque en cours et se place au début de l'époque donnée.
+     *
+     * @param epoch Le numéro de l'époque (à partir de 0), au moins égal à
+     *              l'époque courante
+     * @throws IllegalArgumentException Si l'époque est déjà passée
+     */
+    void seekEpoch(int epoch);
+}
@@ -0,0 +1,122 @@
+package com.parallelai.training.utils;
+
+import com.parallelai.game.Board;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Opérations communes aux itérateurs qui construisent leurs batchs à la
+ * demande depuis une {@link BoardSource}.
+ *
+ * Un exemple est désigné par un entier : l'indice de la ligne, ou
+ * ligne * 8 + symétrie lorsque les images symétriques sont ajoutées.
+ */
+final class Examples {
+    private static final int CELLS = 64;
+
+    private Examples() {
+    }
+
+    /**
+     * Énumère les paires (ligne, symétrie) distinctes des lignes données :
+     * les images identiques d'une position symétrique ne sont comptées
+     * qu'une fois.
+     *
+     * @param source La source des exemples
+     * @param rows   Les lignes de la source
+     * @return Les exemples, codés ligne * 8 + symétrie
+     */
+    static int[] expand(BoardSource source, int[] rows) {
+        if ((long) source.size() * Board.NB_SYMMETRIES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Dataset trop grand pour l'augmentation par symétrie : "
+                    + source.size() + " lignes");
+        }
+
+        int[] expanded = new int[rows.length * Board.NB_SYMMETRIES];
+        int count = 0;
+        long[] board = new long[2];
+        long[] seenBlack = new long[Board.NB_SYMMETRIES];
+        long[] seenWhite = new long[Board.NB_SYMMETRIES];
+
+        for (int row : rows) {
+            source.read(row, board);
+            int nbSeen = 0;
+            for (int symmetry = 0; symmetry < Board.NB_SYMMETRIES; symmetry++) {
+                long b = Board.transform(board[0], symmetry);
+                long w = Board.transform(board[1], symmetry);
+                boolean duplicate = false;
+                for (int k = 0; k < nbSeen && !duplicate; k++) {
+                    duplicate = seenBlack[k] == b && seenWhite[k] == w;
+                }
+                if (duplicate) {
+                    continue;
+                }
+                seenBlack[nbSeen] = b;
+                seenWhite[nbSeen] = w;
+                nbSeen++;
+                expanded[count++] = row * Board.NB_SYMMETRIES + symmetry;
+            }
+        }
+        return Arrays.copyOf(expanded, count);
+    }
+
+    /**
+     * Mélange des exemples sur place (Fisher-Yates).
+     */
+    static void shuffle(int[] examples, Random random) {
+        for (int i = examples.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = examples[i];
+            examples[i] = examples[j];
+            examples[j] = tmp;
+        }
+    }
+
+    /**
+     * Écrit n exemples consécutifs dans des tableaux de batch : 64 cases
+     * (1 noir, -1 blanc, 0 vide) et une valeur cible par exemple.
+     *
+     * @param source       La source des exemples
+     * @param examples     Les exemples à parcourir
+     * @param from         L'indice du premier exemple du batch
+     * @param n            Le nombre d'exemples du batch
+     * @param nbSymmetries 8 si les exemples sont codés avec leur symétrie,
+     *                     1 sinon
+     * @param random       Si non nul, chaque exemple reçoit en plus une
+     *                     symétrie tirée au hasard
+     * @param board        Tableau de travail de deux cases, réutilisé d'un
+     *                     batch à l'autre par l'appelant
+     * @param features     Reçoit les cases, mis à zéro au préalable
+     * @param labels       Reçoit les valeurs cibles
+     */
+    static void fill(BoardSource source, int[] examples, int from, int n, int nbSymmetries, Random random,
+            long[] board, float[] features, float[] labels) {
+        Arrays.fill(features, 0, n * CELLS, 0f);
+        for (int i = 0; i < n; i++) {
+            int example = examples[from + i];
+            labels[i] = source.read(example / nbSymmetries, board);
+
+            long black = board[0];
+            long white = board[1];
+            int symmetry = example % nbSymmetries;
+            if (symmetry != 0) {
+                black = Board.transform(black, symmetry);
+                white = Board.transform(white, symmetry);
+            }
+            if (random != null) {
+                int extra = random.nextInt(Board.NB_SYMMETRIES);
+                black = Board.transform(black, extra);
+                white = Board.transform(white, extra);
+            }
+
+            int base = i * CELLS;
+            for (long bits = black; bits != 0; bits &= bits - 1) {
+                features[base + Long.numberOfTrailingZeros(bits)] = 1f;
+            }
+            for (long bits = white; bits != 0; bits &= bits - 1) {
+                features[base + Long.numberOfTrailingZeros(bits)] = -1f;
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.parallelai.training.utils;
+
+import com.parallelai.export.utilities.BinaryStateReader;
+import com.parallelai.export.utilities.BinaryStateWriter;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Dataset projeté en mémoire (memory-mapped), lu ligne à ligne à la demande.
+ * Le fichier n'est jamais chargé en entier dans le tas : seules les pages
+ * consultées sont amenées en mémoire par le système.
+ *
+ * Les deux formats d'export sont acceptés :
+ * - binaire : les lignes sont de taille fixe, aucun index n'est nécessaire
+ * - CSV : un premier parcours relève la position de début de chaque ligne
+ *   (8 octets par ligne), les valeurs sont analysées à la lecture
+ *
+ * Le fichier est projeté par régions de 1 Go qui se recouvrent de
+ * {@value #REGION_OVERLAP} octets, de sorte qu'une ligne commençant dans une
+ * région y est toujours entière. Les lectures sont absolues : une instance
+ * peut être lue par plusieurs threads.
+ */
+public class MappedDataset implements BoardSource {
+    /** Taille d'une région projetée, hors recouvrement */
+    private static final long REGION_SIZE = 1L << 30;
+
+    /** Recouvrement entre deux régions : taille maximale d'une ligne */
+    private static final int REGION_OVERLAP = 4096;
+
+    private final MappedByteBuffer[] regions;
+    private final boolean binary;
+    private final int size;
+
+    /** Position de début de chaque ligne (CSV uniquement) */
+    private final long[] lineOffsets;
+
+    private MappedDataset(MappedByteBuffer[] regions, boolean binary, int size, long[] lineOffsets) {
+        this.regions = regions;
+        this.binary = binary;
+        this.size = size;
+        this.lineOffsets = lineOffsets;
+    }
+
+    /**
+     * Projette un fichier de dataset en mémoire. Le format est reconnu
+     * d'après le nombre magique en tête du fichier.
+     *
+     * @param path Chemin du fichier CSV ou binaire
+     * @return Le dataset projeté
+     * @throws IOException Si le fichier est illisible ou mal formé
+     */
+    public static MappedDataset open(String path) throws IOException {
+        boolean binary = BinaryStateReader.isBinary(path);
+        long rows = binary ? BinaryStateReader.rowCount(path) : 0;
+
+        MappedByteBuffer[] regions;
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (binary && fileSize < BinaryStateWriter.HEADER_BYTES + rows * BinaryStateWriter.ROW_BYTES) {
+                throw new IOException("Fichier binaire tronqué : " + path);
+            }
+
+            int nbRegions = (int) Math.max(1, (fileSize + REGION_SIZE - 1) / REGION_SIZE);
+            regions = new MappedByteBuffer[nbRegions];
+            for (int i = 0; i < nbRegions; i++) {
+                long start = i * REGION_SIZE;
+                long length = Math.min(fileSize - start, REGION_SIZE + REGION_OVERLAP);
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                regions[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        if (binary) {
+            if (rows > Integer.MAX_VALUE) {
+                throw new IOException("Trop de lignes pour un dataset projeté : " + rows);
+            }
+            return new MappedDataset(regions, true, (int) rows, null);
+        }
+
+        long[] offsets = indexLines(regions);
+        return new MappedDataset(regions, false, offsets.length, offsets);
+    }
+
+    /**
+     * Relève la position de début de chaque ligne de données d'un CSV.
+     * Les lignes vides et une éventuelle ligne d'en-tête non numérique sont
+     * ignorées.
+     */
+    private static long[] indexLines(MappedByteBuffer[] regions) throws IOException {
+        long[] offsets = new long[1024];
+        int count = 0;
+        long lineStart = 0;
+        boolean firstLine = true;
+
+        for (int r = 0; r < regions.length; r++) {
+            MappedByteBuffer region = regions[r];
+            long base = r * REGION_SIZE;
+            int end = (int) Math.min(region.limit(), REGION_SIZE);
+            boolean lastRegion = r == regions.length - 1;
+
+            for (int i = 0; i < end; i++) {
+                boolean endOfFile = lastRegion && i == end - 1;
+                if (region.get(i) != '\n' && !endOfFile) {
+                    continue;
+                }
+
+                long lineEnd = base + i + (region.get(i) == '\n' ? 0 : 1);
+                if (lineEnd > lineStart && byteAt(regions, lineEnd - 1) == '\r') {
+                    lineEnd--;
+                }
+                if (lineEnd - lineStart > REGION_OVERLAP) {
+                    throw new IOException("Ligne trop longue à la position " + lineStart);
+                }
+                if (lineEnd > lineStart && !(firstLine && !isNumericStart(regions, lineStart))) {
+                    if (count == offsets.length) {
+                        if (count == Integer.MAX_VALUE - 8) {
+                            throw new IOException("Trop de lignes pour un dataset projeté");
+                        }
+                        offsets = Arrays.copyOf(offsets, (int) Math.min(Integer.MAX_VALUE - 8, count * 2L));
+                    }
+                    offsets[count++] = lineStart;
+                }
+                firstLine = false;
+                lineStart = base + i + 1;
+            }
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    private static byte byteAt(MappedByteBuffer[] regions, long offset) {
+        return regions[(int) (offset / REGION_SIZE)].get((int) (offset % REGION_SIZE));
+    }
+
+    private static boolean isNumericStart(MappedByteBuffer[] regions, long offset) {
+        byte c = byteAt(regions, offset);
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public float read(int row, long[] board) {
+        if (binary) {
+            long offset = BinaryStateWriter.HEADER_BYTES + (long) row * BinaryStateWriter.ROW_BYTES;
+            MappedByteBuffer region = regions[(int) (offset / REGION_SIZE)];
+            int pos = (int) (offset % REGION_SIZE);
+            board[0] = region.getLong(pos);
+            board[1] = region.getLong(pos + 8);
+            return region.getFloat(pos + 16);
+        }
+
+        long offset = lineOffsets[row];
+        MappedByteBuffer region = regions[(int) (offset / REGION_SIZE)];
+        int pos = (int) (offset % REGION_SIZE);
+
+        int end = (int) Math.min(region.limit(), pos + (long) REGION_OVERLAP);
+        return CsvDatasetParser.parseValue(region, CsvDatasetParser.parseCells(region, pos, end, board));
+    }
+}
@@ -0,0 +1,223 @@
+package com.parallelai.training.utils;
+
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.parallelai.game.Board;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Itérateur de mini-batchs sur un {@link MappedDataset}.
+ * Les exemples sont lus à la demande dans le fichier projeté et écrits dans
+ * des tableaux préalloués : aucun DataSet par ligne n'est créé, la mémoire
+ * occupée ne dépend que de la taille du batch et du nombre d'exemples
+ * (un int par exemple pour l'ordre de parcours).
+ *
+ * L'ordre des exemples est une permutation mélangée à chaque reset().
+ * Avec l'augmentation par symétrie, chaque exemple est une paire
+ * (ligne, symétrie) : les images identiques d'une position symétrique ne
+ * sont comptées qu'une fois.
+ *
+ * Les tableaux d'un batch sont réutilisés au batch suivant : le DataSet
+ * renvoyé par next() n'est valide que jusqu'à l'appel suivant. Pour cette
+ * raison l'itérateur refuse d'être enveloppé dans un itérateur asynchrone.
+ */
+public class MappedDatasetIterator implements DataSetIterator, EpochSeekable {
+    private static final int BOARD_SIZE = 8;
+    private static final int CELLS = BOARD_SIZE * BOARD_SIZE;
+
+    private final MappedDataset dataset;
+    private final int batchSize;
+    private final int nbSymmetries;
+    private final boolean shuffle;
+    private final Random random;
+
+    /** Exemples parcourus : ligne * nbSymmetries + symétrie */
+    private final int[] examples;
+    private int cursor;
+    private int epoch;
+
+    /**
+     * Tampons d'un batch : tableaux Java remplis exemple par exemple, puis
+     * copiés en bloc dans les tableaux natifs.
+     */
+    private static final class Buffers {
+        final float[] features;
+        final float[] labels;
+        final INDArray featureArray;
+        final INDArray labelArray;
+        final long[] board = new long[2];
+
+        Buffers(int n) {
+            features = new float[n * CELLS];
+            labels = new float[n];
+            featureArray = Nd4j.create(DataType.FLOAT, n, 1, BOARD_SIZE, BOARD_SIZE);
+            labelArray = Nd4j.create(DataType.FLOAT, n, 1);
+        }
+
+        int size() {
+            return labels.length;
+        }
+    }
+
+    private Buffers full;
+    private Buffers tail;
+
+    private DataSetPreProcessor preProcessor;
+
+    /**
+     * @param dataset           Le dataset projeté
+     * @param rows              Les lignes du dataset à parcourir
+     * @param batchSize         La taille des mini-batchs
+     * @param expandSymmetries  true pour ajouter les images symétriques de
+     *                          chaque position
+     * @param shuffle           true pour mélanger l'ordre à chaque reset()
+     * @param seed              La graine du mélange
+     */
+    public MappedDatasetIterator(MappedDataset dataset, int[] rows, int batchSize, boolean expandSymmetries,
+            boolean shuffle, long seed) {
+        this.dataset = dataset;
+        this.batchSize = batchSize;
+        this.nbSymmetries = expandSymmetries ? Board.NB_SYMMETRIES : 1;
+        this.shuffle = shuffle;
+        this.random = new Random(seed);
+        this.examples = expandSymmetries ? Examples.expand(dataset, rows) : rows.clone();
+        rewind();
+    }
+
+    /**
+     * @return Le nombre d'exemples parcourus par époque
+     */
+    public int numExamples() {
+        return examples.length;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return cursor < examples.length;
+    }
+
+    @Override
+    public DataSet next() {
+        return next(batchSize);
+    }
+
+    @Override
+    public DataSet next(int num) {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int n = Math.min(num, examples.length - cursor);
+        Buffers buffers = buffersFor(n);
+        Examples.fill(dataset, examples, cursor, n, nbSymmetries, null, buffers.board, buffers.features,
+                buffers.labels);
+        cursor += n;
+
+        // Copie en bloc dans les tableaux natifs préalloués
+        buffers.featureArray.data().setData(buffers.features);
+        buffers.labelArray.data().setData(buffers.labels);
+
+        DataSet batch = new DataSet(buffers.featureArray, buffers.labelArray);
+        if (preProcessor != null) {
+            preProcessor.preProcess(batch);
+        }
+        return batch;
+    }
+
+    /**
+     * Renvoie les tampons d'un batch de n exemples. Les batchs complets et
+     * le dernier batch d'une époque, plus petit, ont chacun leurs tampons
+     * alloués une seule fois.
+     */
+    private Buffers buffersFor(int n) {
+        if (n == batchSize) {
+            if (full == null) {
+                full = new Buffers(n);
+            }
+            return full;
+        }
+        if (tail == null || tail.size() != n) {
+            tail = new Buffers(n);
+        }
+        return tail;
+    }
+
+    @Override
+    public void reset() {
+        rewind();
+        epoch++;
+    }
+
+    /**
+     * Rejoue les mélanges des époques sautées : l'ordre obtenu est celui
+     * qu'auraient donné les reset() successifs.
+     */
+    @Override
+    public void seekEpoch(int target) {
+        if (target < epoch) {
+            throw new IllegalArgumentException("Époque " + target + " déjà passée (époque courante : " + epoch + ")");
+        }
+        while (epoch < target) {
+            reset();
+        }
+        cursor = 0;
+    }
+
+    private void rewind() {
+        cursor = 0;
+        if (shuffle) {
+            Examples.shuffle(examples, random);
+        }
+    }
+
+    @Override
+    public int inputColumns() {
+        return CELLS;
+    }
+
+    @Override
+    public int totalOutcomes() {
+        return 1;
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return true;
+    }
+
+    /**
+     * Les tampons étant réutilisés d'un batch à l'autre, la lecture anticipée
+     * par un autre thread corromprait le batch en cours d'utilisation.
+     */
+    @Override
+    public boolean asyncSupported() {
+        return false;
+    }
+
+    @Override
+    public int batch() {
+        return batchSize;
+    }
+
+    @Override
+    public void setPreProcessor(DataSetPreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    @Override
+    public DataSetPreProcessor getPreProcessor() {
+        return preProcessor;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return null;
+    }
+}
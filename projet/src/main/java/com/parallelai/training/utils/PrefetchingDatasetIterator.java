@@ -0,0 +1,360 @@
+package com.parallelai.training.utils;
+
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.parallelai.game.Board;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Itérateur de mini-batchs préparés à l'avance par des threads producteurs.
+ * Pendant que le réseau traite un batch, les suivants sont lus dans la
+ * source, éventuellement augmentés par une symétrie aléatoire, et convertis
+ * en tableaux : le réseau n'attend plus la préparation des données.
+ *
+ * Avec N producteurs, le batch k est préparé par le producteur k mod N et
+ * déposé dans la file de ce producteur : les batchs sont rendus dans
+ * l'ordre, quel que soit le nombre de producteurs, et une graine donnée
+ * produit toujours la même suite de batchs.
+ *
+ * next(num) découpe les batchs préparés : une demande d'une autre taille
+ * que celle de construction prend la fin du batch entamé puis le début des
+ * suivants, sans changer l'ordre des exemples.
+ *
+ * L'ordre des exemples est re-mélangé à chaque époque. Les producteurs
+ * d'une époque ne démarrent qu'au premier appel de hasNext() ou next() :
+ * le reset() final d'une boucle d'entraînement ne lance aucun thread.
+ */
+public class PrefetchingDatasetIterator implements DataSetIterator, EpochSeekable {
+    private static final int BOARD_SIZE = 8;
+    private static final int CELLS = BOARD_SIZE * BOARD_SIZE;
+
+    /**
+     * Batch déposé dans une file : les données, ou l'erreur survenue lors
+     * de leur préparation.
+     */
+    private static final class Batch {
+        final DataSet data;
+        final RuntimeException error;
+
+        Batch(DataSet data, RuntimeException error) {
+            this.data = data;
+            this.error = error;
+        }
+    }
+
+    private final BoardSource source;
+    private final int[] examples;
+    private final int nbSymmetries;
+    private final int batchSize;
+    private final int nbBatches;
+    private final boolean randomSymmetry;
+    private final long seed;
+
+    private final List<BlockingQueue<Batch>> queues;
+    private Thread[] producers;
+    private int epoch;
+    private int shuffledEpoch = -1;
+    private int nextBatch;
+
+    /** Batch entamé par next(num) et position de son premier exemple restant */
+    private DataSet pending;
+    private int pendingOffset;
+
+    private volatile DataSetPreProcessor preProcessor;
+
+    /**
+     * @param source           La source des exemples
+     * @param rows             Les lignes de la source à parcourir
+     * @param batchSize        La taille des mini-batchs
+     * @param expandSymmetries true pour ajouter les images symétriques
+     *                         distinctes de chaque position
+     * @param randomSymmetry   true pour appliquer à chaque exemple une
+     *                         symétrie tirée au hasard à chaque époque
+     * @param queueDepth       Le nombre de batchs préparés à l'avance
+     * @param nbProducers      Le nombre de threads producteurs
+     * @param seed             La graine du mélange et de l'augmentation
+     */
+    public PrefetchingDatasetIterator(BoardSource source, int[] rows, int batchSize, boolean expandSymmetries,
+            boolean randomSymmetry, int queueDepth, int nbProducers, long seed) {
+        if (batchSize < 1 || queueDepth < 1 || nbProducers < 1) {
+            throw new IllegalArgumentException("Taille de batch, profondeur de file et nombre de producteurs "
+                    + "doivent être positifs");
+        }
+        this.source = source;
+        this.examples = expandSymmetries ? Examples.expand(source, rows) : rows.clone();
+        this.nbSymmetries = expandSymmetries ? Board.NB_SYMMETRIES : 1;
+        this.batchSize = batchSize;
+        this.nbBatches = (examples.length + batchSize - 1) / batchSize;
+        this.randomSymmetry = randomSymmetry;
+        this.seed = seed;
+
+        int producerCount = Math.max(1, Math.min(nbProducers, nbBatches));
+        int perQueue = Math.max(1, (queueDepth + producerCount - 1) / producerCount);
+        this.queues = new ArrayList<>(producerCount);
+        for (int i = 0; i < producerCount; i++) {
+            queues.add(new ArrayBlockingQueue<>(perQueue));
+        }
+    }
+
+    /**
+     * @return Le nombre d'exemples parcourus par époque
+     */
+    public int numExamples() {
+        return examples.length;
+    }
+
+    /**
+     * Lance les producteurs de l'époque courante s'ils ne tournent pas.
+     */
+    private void startProducers() {
+        if (producers != null) {
+            return;
+        }
+        shuffle();
+
+        producers = new Thread[queues.size()];
+        for (int i = 0; i < producers.length; i++) {
+            int first = i;
+            int currentEpoch = epoch;
+            producers[i] = new Thread(() -> produce(first, currentEpoch), "prefetch-" + i);
+            producers[i].setDaemon(true);
+            producers[i].start();
+        }
+    }
+
+    /**
+     * Mélange les exemples pour l'époque courante, une seule fois par
+     * époque : chaque ordre dérive de celui de l'époque précédente.
+     */
+    private void shuffle() {
+        if (shuffledEpoch != epoch) {
+            Examples.shuffle(examples, new Random(seed + epoch));
+            shuffledEpoch = epoch;
+        }
+    }
+
+    /**
+     * Boucle d'un producteur : prépare les batchs first, first + N, ...
+     */
+    private void produce(int first, int currentEpoch) {
+        BlockingQueue<Batch> queue = queues.get(first);
+        long[] board = new long[2];
+        try {
+            for (int k = first; k < nbBatches; k += queues.size()) {
+                Batch batch;
+                try {
+                    batch = new Batch(buildBatch(k, currentEpoch, board), null);
+                } catch (RuntimeException e) {
+                    batch = new Batch(null, e);
+                }
+                queue.put(batch);
+                if (batch.error != null) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Époque abandonnée par reset()
+        }
+    }
+
+    private DataSet buildBatch(int k, int currentEpoch, long[] board) {
+        int from = k * batchSize;
+        int n = Math.min(batchSize, examples.length - from);
+        float[] features = new float[n * CELLS];
+        float[] labels = new float[n];
+
+        // Graine propre à chaque batch : le tirage ne dépend pas du
+        // producteur qui le prépare
+        Random random = randomSymmetry ? new Random((seed + currentEpoch) * 31 + k) : null;
+        Examples.fill(source, examples, from, n, nbSymmetries, random, board, features, labels);
+
+        DataSet batch = new DataSet(
+                Nd4j.create(features, new long[] { n, 1, BOARD_SIZE, BOARD_SIZE }, 'c'),
+                Nd4j.create(labels, new long[] { n, 1 }, 'c'));
+        DataSetPreProcessor processor = preProcessor;
+        if (processor != null) {
+            processor.preProcess(batch);
+        }
+        return batch;
+    }
+
+    /**
+     * Arrête les producteurs en cours, vide les files et oublie le batch
+     * entamé.
+     */
+    private void stopProducers() {
+        pending = null;
+        if (producers == null) {
+            return;
+        }
+        for (Thread producer : producers) {
+            producer.interrupt();
+        }
+        for (Thread producer : producers) {
+            try {
+                producer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (BlockingQueue<Batch> queue : queues) {
+            queue.clear();
+        }
+        producers = null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (pending != null) {
+            return true;
+        }
+        if (nextBatch < nbBatches) {
+            startProducers();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public DataSet next() {
+        return next(batchSize);
+    }
+
+    /**
+     * Renvoie les num exemples suivants, ou ceux qui restent en fin
+     * d'époque. Sans batch entamé, une demande de la taille de construction
+     * rend directement le batch préparé.
+     */
+    @Override
+    public DataSet next(int num) {
+        if (num < 1) {
+            throw new IllegalArgumentException("Nombre d'exemples demandé non positif : " + num);
+        }
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<DataSet> parts = new ArrayList<>(1);
+        int needed = num;
+        while (needed > 0 && hasNext()) {
+            if (pending == null) {
+                pending = take();
+                pendingOffset = 0;
+            }
+            int available = pending.numExamples() - pendingOffset;
+            int n = Math.min(needed, available);
+            parts.add(n == pending.numExamples() ? pending : pending.getRange(pendingOffset, pendingOffset + n));
+            pendingOffset += n;
+            needed -= n;
+            if (pendingOffset == pending.numExamples()) {
+                pending = null;
+            }
+        }
+        return parts.size() == 1 ? parts.get(0) : DataSet.merge(parts);
+    }
+
+    /**
+     * Attend le batch préparé suivant.
+     */
+    private DataSet take() {
+        Batch batch;
+        try {
+            batch = queues.get(nextBatch % queues.size()).take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Attente du batch suivant interrompue", e);
+        }
+        if (batch.error != null) {
+            throw batch.error;
+        }
+        nextBatch++;
+        return batch.data;
+    }
+
+    /**
+     * Abandonne l'époque en cours et prépare la suivante, avec un nouvel
+     * ordre des exemples.
+     */
+    @Override
+    public void reset() {
+        stopProducers();
+        nextBatch = 0;
+        epoch++;
+    }
+
+    /**
+     * Rejoue les mélanges des époques sautées, sans préparer leurs batchs.
+     */
+    @Override
+    public void seekEpoch(int target) {
+        if (target < epoch) {
+            throw new IllegalArgumentException("Époque " + target + " déjà passée (époque courante : " + epoch + ")");
+        }
+        stopProducers();
+        nextBatch = 0;
+        for (; epoch < target; epoch++) {
+            shuffle();
+        }
+    }
+
+    /**
+     * Arrête les producteurs et termine l'époque en cours. L'itérateur
+     * reste utilisable après un reset().
+     */
+    public void shutdown() {
+        stopProducers();
+        nextBatch = nbBatches;
+    }
+
+    @Override
+    public int inputColumns() {
+        return CELLS;
+    }
+
+    @Override
+    public int totalOutcomes() {
+        return 1;
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return true;
+    }
+
+    /**
+     * Le préchargement est déjà assuré par cet itérateur : inutile de
+     * l'envelopper dans un AsyncDataSetIterator.
+     */
+    @Override
+    public boolean asyncSupported() {
+        return false;
+    }
+
+    @Override
+    public int batch() {
+        return batchSize;
+    }
+
+    @Override
+    public void setPreProcessor(DataSetPreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    @Override
+    public DataSetPreProcessor getPreProcessor() {
+        return preProcessor;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return null;
+    }
+}
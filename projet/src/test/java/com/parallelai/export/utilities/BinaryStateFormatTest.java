@@ -0,0 +1,157 @@
+package com.parallelai.export.utilities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Écriture puis relecture du format binaire des états.
+ */
+class BinaryStateFormatTest {
+    @TempDir
+    Path directory;
+
+    /** Ligne écrite puis attendue à la relecture */
+    private static final class Row {
+        final long black;
+        final long white;
+        final double sum;
+        final int count;
+
+        Row(long black, long white, double sum, int count) {
+            this.black = black;
+            this.white = white;
+            this.sum = sum;
+            this.count = count;
+        }
+    }
+
+    private static List<Row> randomRows(int nbRows, long seed) {
+        Random random = new Random(seed);
+        List<Row> rows = new ArrayList<>(nbRows);
+        for (int i = 0; i < nbRows; i++) {
+            long black = random.nextLong();
+            long white = random.nextLong() & ~black;
+            int count = 1 + random.nextInt(1000);
+            rows.add(new Row(black, white, random.nextInt(2 * count + 1) * 0.5, count));
+        }
+        return rows;
+    }
+
+    private String write(List<Row> rows) throws IOException {
+        String path = directory.resolve("states.bin").toString();
+        try (BinaryStateWriter writer = new BinaryStateWriter(path)) {
+            for (Row row : rows) {
+                writer.writeRow(row.black, row.white, row.sum, row.count);
+            }
+        }
+        return path;
+    }
+
+    @Test
+    void rowsReadBackAsWritten() throws IOException {
+        // Plus de lignes que n'en contient le tampon de lecture
+        List<Row> rows = randomRows(100_000, 1);
+        String path = write(rows);
+
+        assertTrue(BinaryStateReader.isBinary(path));
+        assertEquals(rows.size(), BinaryStateReader.rowCount(path));
+        assertEquals(BinaryStateWriter.HEADER_BYTES + (long) rows.size() * BinaryStateWriter.ROW_BYTES,
+                Files.size(Path.of(path)));
+
+        int[] index = { 0 };
+        long read = BinaryStateReader.read(path, (black, white, label, sum, count) -> {
+            Row row = rows.get(index[0]++);
+            assertEquals(row.black, black);
+            assertEquals(row.white, white);
+            assertEquals(row.sum, sum, 0.0);
+            assertEquals(row.count, count);
+            assertEquals((float) (row.sum / row.count), label, 0.0f);
+        });
+        assertEquals(rows.size(), read);
+        assertEquals(rows.size(), index[0]);
+    }
+
+    @Test
+    void sumsBeyondFloatPrecisionStayExact() throws IOException {
+        double sum = (1 << 24) + 1.5;
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row(3L, 12L, sum, 40_000_000));
+        String path = write(rows);
+
+        BinaryStateReader.read(path, (black, white, label, readSum, count) -> {
+            assertEquals(sum, readSum, 0.0);
+            assertEquals(40_000_000, count);
+        });
+    }
+
+    @Test
+    void emptyFileHasHeaderOnly() throws IOException {
+        String path = write(new ArrayList<>());
+        assertEquals(0, BinaryStateReader.rowCount(path));
+        assertEquals(0, BinaryStateReader.read(path, (black, white, label, sum, count) -> {
+            throw new AssertionError("Aucune ligne attendue");
+        }));
+    }
+
+    @Test
+    void csvIsNotRecognisedAsBinary() throws IOException {
+        Path csv = directory.resolve("states.csv");
+        Files.writeString(csv, "0.0,1.0,-1.0\n");
+        assertFalse(BinaryStateReader.isBinary(csv.toString()));
+        assertFalse(BinaryStateReader.isBinary(directory.resolve("absent.bin").toString()));
+    }
+
+    @Test
+    void truncatedFileIsRejected() throws IOException {
+        String path = write(randomRows(10, 2));
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            file.setLength(file.length() - 1);
+        }
+        assertThrows(IOException.class, () -> BinaryStateReader.read(path, (black, white, label, sum, count) -> {
+        }));
+    }
+
+    @Test
+    void unknownVersionIsRejected() throws IOException {
+        String path = write(randomRows(1, 3));
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            file.seek(4);
+            file.write(new byte[] { 99, 0, 0, 0 });
+        }
+        assertThrows(IOException.class, () -> BinaryStateReader.rowCount(path));
+    }
+
+    @Test
+    void csvConversionKeepsSumsAndCounts() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            csv.append(i == 0 ? "1.0" : i == 63 ? "-1.0" : "0.0").append(',');
+        }
+        csv.append("0.75,3.0,4\n");
+        Path csvPath = directory.resolve("full.csv");
+        Files.writeString(csvPath, csv.toString());
+        String binPath = directory.resolve("full.bin").toString();
+
+        assertEquals(1, BinaryStateWriter.convertCsv(csvPath.toString(), binPath));
+        BinaryStateReader.read(binPath, (black, white, label, sum, count) -> {
+            assertEquals(1L, black);
+            assertEquals(1L << 63, white);
+            assertEquals(3.0, sum, 0.0);
+            assertEquals(4, count);
+            assertEquals(0.75f, label, 0.0f);
+        });
+    }
+}
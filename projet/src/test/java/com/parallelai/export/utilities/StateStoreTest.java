@@ -0,0 +1,192 @@
+package com.parallelai.export.utilities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Ajout, fusion et parcours des tables d'états, au-delà de leur capacité
+ * initiale : agrandissement des segments ou débordement.
+ */
+class StateStoreTest {
+    private static final int NB_STATES = 20_000;
+
+    /** Résultat cumulé d'un état dans la table de référence */
+    private static final class Expected {
+        double sum;
+        int count;
+    }
+
+    /** Les implémentations testées, créées petites pour forcer leur croissance */
+    private static List<Supplier<StateStore>> stores() {
+        List<Supplier<StateStore>> stores = new ArrayList<>();
+        stores.add(() -> new StateMap(16));
+        stores.add(() -> new ConcurrentStateMap(16));
+        stores.add(() -> new OffHeapStateMap(64L << 20));
+        return stores;
+    }
+
+    private static long key(long black, long white) {
+        return black * 31 + white;
+    }
+
+    /**
+     * Ajoute des états aléatoires, chacun plusieurs fois, à la table et à la
+     * référence. Les résultats sont des multiples de 0.5, exacts dans toutes
+     * les tables.
+     */
+    private static void fill(StateStore store, Map<Long, Expected> expected, Map<Long, long[]> boards, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < NB_STATES; i++) {
+            long black = random.nextLong() & 0x0000FFFFFFFF0000L;
+            long white = random.nextLong() & ~black & 0x00FFFF0000FFFF00L;
+            int repeats = 1 + random.nextInt(3);
+            for (int r = 0; r < repeats; r++) {
+                double result = random.nextInt(3) * 0.5;
+                store.add(black, white, result);
+                Expected entry = expected.computeIfAbsent(key(black, white), k -> new Expected());
+                entry.sum += result;
+                entry.count++;
+                boards.put(key(black, white), new long[] { black, white });
+            }
+        }
+    }
+
+    private static void assertContent(StateStore store, Map<Long, Expected> expected, Map<Long, long[]> boards) {
+        assertEquals(expected.size(), store.size(), store.getClass().getSimpleName());
+        Map<Long, Expected> seen = new HashMap<>();
+        store.forEach((black, white, sum, count) -> {
+            long[] board = boards.get(key(black, white));
+            assertNotNull(board, "État inconnu");
+            assertEquals(board[0], black);
+            assertEquals(board[1], white);
+            Expected entry = new Expected();
+            entry.sum = sum;
+            entry.count = count;
+            assertTrue(seen.put(key(black, white), entry) == null, "État parcouru deux fois");
+        });
+        assertEquals(expected.size(), seen.size());
+        for (Map.Entry<Long, Expected> entry : expected.entrySet()) {
+            Expected actual = seen.get(entry.getKey());
+            assertEquals(entry.getValue().count, actual.count);
+            assertEquals(entry.getValue().sum, actual.sum, 0.0);
+        }
+    }
+
+    @Test
+    void addAndForEachKeepEveryStateAcrossGrowth() {
+        for (Supplier<StateStore> factory : stores()) {
+            StateStore store = factory.get();
+            try {
+                Map<Long, Expected> expected = new HashMap<>();
+                Map<Long, long[]> boards = new HashMap<>();
+                fill(store, expected, boards, 1);
+                assertContent(store, expected, boards);
+            } finally {
+                store.release();
+            }
+        }
+    }
+
+    @Test
+    void mergeAddsSumsAndCountsOfSharedStates() {
+        for (Supplier<StateStore> factory : stores()) {
+            StateStore left = factory.get();
+            StateStore right = factory.get();
+            try {
+                Map<Long, Expected> expected = new HashMap<>();
+                Map<Long, long[]> boards = new HashMap<>();
+                fill(left, expected, boards, 2);
+                fill(right, expected, boards, 3);
+                // Des états communs aux deux tables
+                fill(right, expected, boards, 2);
+
+                left.merge(right);
+                assertContent(left, expected, boards);
+            } finally {
+                left.release();
+                right.release();
+            }
+        }
+    }
+
+    @Test
+    void addWithCountAccumulatesOccurrences() {
+        for (Supplier<StateStore> factory : stores()) {
+            StateStore store = factory.get();
+            try {
+                store.add(1L, 2L, 1.5, 3);
+                store.add(1L, 2L, 0.5, 2);
+                store.add(4L, 8L, 1.0, 1);
+                assertEquals(2, store.size());
+                store.forEach((black, white, sum, count) -> {
+                    if (black == 1L) {
+                        assertEquals(2L, white);
+                        assertEquals(2.0, sum, 0.0);
+                        assertEquals(5, count);
+                    } else {
+                        assertEquals(8L, white);
+                        assertEquals(1.0, sum, 0.0);
+                        assertEquals(1, count);
+                    }
+                });
+            } finally {
+                store.release();
+            }
+        }
+    }
+
+    @Test
+    void clearEmptiesTheTable() {
+        for (Supplier<StateStore> factory : stores()) {
+            StateStore store = factory.get();
+            try {
+                fill(store, new HashMap<>(), new HashMap<>(), 4);
+                store.clear();
+                assertTrue(store.isEmpty());
+                store.forEach((black, white, sum, count) -> {
+                    throw new AssertionError("Table non vide après clear()");
+                });
+
+                store.add(5L, 6L, 1.0);
+                assertEquals(1, store.size());
+            } finally {
+                store.release();
+            }
+        }
+    }
+
+    @Test
+    void concurrentAddsToSharedTableAreExact() throws InterruptedException {
+        ConcurrentStateMap store = new ConcurrentStateMap(16);
+        int nbThreads = 4;
+        int nbKeys = 5_000;
+        Thread[] threads = new Thread[nbThreads];
+        for (int t = 0; t < nbThreads; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < nbKeys; i++) {
+                    store.add(i + 1L, (long) i << 20, 0.5);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(nbKeys, store.size());
+        store.forEach((black, white, sum, count) -> {
+            assertEquals(nbThreads, count);
+            assertEquals(nbThreads * 0.5, sum, 0.0);
+        });
+    }
+}
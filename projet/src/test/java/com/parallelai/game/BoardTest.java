@@ -0,0 +1,253 @@
+package com.parallelai.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiConsumer;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Génération des coups sur bitboards, comparée à une référence qui parcourt
+ * la grille case par case, annulation des coups joués, empreinte de Zobrist
+ * et symétries du plateau.
+ */
+class BoardTest {
+    private static final int NB_GAMES = 50;
+
+    /** Nombre de positions atteintes à chaque profondeur depuis la position initiale */
+    private static final long[] PERFT = { 1, 4, 12, 56, 244, 1396, 8200 };
+
+    private static final int[][] DIRECTIONS = {
+            { -1, -1 }, { -1, 0 }, { -1, 1 }, { 0, -1 }, { 0, 1 }, { 1, -1 }, { 1, 0 }, { 1, 1 } };
+
+    /**
+     * Référence : pions retournés par un coup, calculés direction par
+     * direction sur la grille.
+     *
+     * @return Le masque des pions retournés, 0 si le coup est invalide
+     */
+    private static long referenceFlips(Disc[][] grid, int row, int col, Disc color) {
+        if (grid[row][col] != Disc.EMPTY) {
+            return 0;
+        }
+        long flips = 0;
+        for (int[] direction : DIRECTIONS) {
+            long line = 0;
+            int r = row + direction[0];
+            int c = col + direction[1];
+            while (r >= 0 && r < 8 && c >= 0 && c < 8 && grid[r][c] == color.opposite()) {
+                line |= 1L << (r * 8 + c);
+                r += direction[0];
+                c += direction[1];
+            }
+            if (line != 0 && r >= 0 && r < 8 && c >= 0 && c < 8 && grid[r][c] == color) {
+                flips |= line;
+            }
+        }
+        return flips;
+    }
+
+    private static List<Move> validMoves(Board board, Disc color) {
+        List<Move> moves = new ArrayList<>();
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                Move move = new Move(row, col, color);
+                if (board.isValidMove(move, color)) {
+                    moves.add(move);
+                }
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Joue une partie aléatoire et appelle check avant chaque coup.
+     */
+    private static void playRandomGame(Random random, BiConsumer<Board, Disc> check) {
+        Board board = new Board();
+        Disc color = Disc.BLACK;
+        int passes = 0;
+        while (passes < 2) {
+            List<Move> moves = validMoves(board, color);
+            if (moves.isEmpty()) {
+                passes++;
+            } else {
+                passes = 0;
+                check.accept(board, color);
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+            color = color.opposite();
+        }
+    }
+
+    private static long perft(Board board, Disc color, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        long nodes = 0;
+        for (Move move : validMoves(board, color)) {
+            Board next = board.copy();
+            next.makeMove(move);
+            nodes += perft(next, color.opposite(), depth - 1);
+        }
+        return nodes;
+    }
+
+    @Test
+    void perftFromInitialPosition() {
+        for (int depth = 0; depth < PERFT.length; depth++) {
+            assertEquals(PERFT[depth], perft(new Board(), Disc.BLACK, depth), "Profondeur " + depth);
+        }
+    }
+
+    @Test
+    void movesAndFlipsMatchReference() {
+        Random random = new Random(1);
+        for (int game = 0; game < NB_GAMES; game++) {
+            playRandomGame(random, (board, color) -> {
+                Disc[][] grid = board.getGrid();
+                long own = board.getBitboard(color);
+                long other = board.getBitboard(color.opposite());
+                for (int row = 0; row < 8; row++) {
+                    for (int col = 0; col < 8; col++) {
+                        long flips = referenceFlips(grid, row, col, color);
+                        Move move = new Move(row, col, color);
+                        assertEquals(flips != 0, board.isValidMove(move, color),
+                                "Case " + row + "," + col);
+                        if (flips == 0) {
+                            continue;
+                        }
+
+                        Board next = board.copy();
+                        next.makeMove(move);
+                        assertEquals(own | flips | 1L << (row * 8 + col), next.getBitboard(color));
+                        assertEquals(other & ~flips, next.getBitboard(color.opposite()));
+                    }
+                }
+            });
+        }
+    }
+
+    @Test
+    void gridAndCountsFollowBitboards() {
+        Random random = new Random(2);
+        playRandomGame(random, (board, color) -> {
+            Disc[][] grid = board.getGrid();
+            for (Disc disc : new Disc[] { Disc.BLACK, Disc.WHITE }) {
+                long bitboard = board.getBitboard(disc);
+                assertEquals(Long.bitCount(bitboard), board.getDiscCount(disc));
+                for (int square = 0; square < 64; square++) {
+                    assertEquals((bitboard >>> square & 1) != 0, grid[square / 8][square % 8] == disc);
+                }
+            }
+        });
+    }
+
+    @Test
+    void makeThenUndoRestoresBoardAndHash() {
+        Random random = new Random(3);
+        for (int game = 0; game < NB_GAMES; game++) {
+            playRandomGame(random, (board, color) -> {
+                Disc[][] grid = board.getGrid();
+                long black = board.getBitboard(Disc.BLACK);
+                long white = board.getBitboard(Disc.WHITE);
+                long hash = board.hash();
+                for (Move move : validMoves(board, color)) {
+                    long flips = board.makeMove(move);
+                    assertEquals(referenceFlips(grid, move.row, move.col, color), flips);
+                    assertEquals(Board.hashOf(board.getBitboard(Disc.BLACK), board.getBitboard(Disc.WHITE)),
+                            board.hash(), "Empreinte incrémentale après makeMove");
+
+                    board.undoMove(move, flips);
+                    assertEquals(black, board.getBitboard(Disc.BLACK));
+                    assertEquals(white, board.getBitboard(Disc.WHITE));
+                    assertEquals(hash, board.hash());
+                }
+            });
+        }
+    }
+
+    @Test
+    void squareOverloadsMatchMoveOverloads() {
+        Random random = new Random(4);
+        for (int game = 0; game < NB_GAMES; game++) {
+            playRandomGame(random, (board, color) -> {
+                Board expected = board.copy();
+                for (Move move : validMoves(board, color)) {
+                    long flips = board.makeMove(move.row * 8 + move.col, color);
+                    assertEquals(expected.makeMove(move), flips);
+                    assertEquals(expected.getBitboard(Disc.BLACK), board.getBitboard(Disc.BLACK));
+                    assertEquals(expected.getBitboard(Disc.WHITE), board.getBitboard(Disc.WHITE));
+
+                    board.undoMove(move.row * 8 + move.col, color, flips);
+                    expected.undoMove(move, flips);
+                    assertEquals(expected.getBitboard(Disc.BLACK), board.getBitboard(Disc.BLACK));
+                    assertEquals(expected.getBitboard(Disc.WHITE), board.getBitboard(Disc.WHITE));
+                }
+            });
+        }
+    }
+
+    @Test
+    void copyIsEqualAndKeepsHash() {
+        Random random = new Random(5);
+        playRandomGame(random, (board, color) -> {
+            Board copy = board.copy();
+            assertEquals(board, copy);
+            assertEquals(board.hashCode(), copy.hashCode());
+            assertEquals(board.hash(), copy.hash());
+        });
+
+        Board board = new Board();
+        assertEquals(Board.hashOf(board.getBitboard(Disc.BLACK), board.getBitboard(Disc.WHITE)), board.hash());
+        board.makeMove(new Move(2, 3, Disc.BLACK));
+        board.reset();
+        assertEquals(new Board(), board);
+        assertEquals(new Board().hash(), board.hash());
+    }
+
+    @Test
+    void canonicalHashIsSharedByAllSymmetricImages() {
+        Random random = new Random(6);
+        for (int game = 0; game < NB_GAMES; game++) {
+            playRandomGame(random, (board, color) -> {
+                long canonical = board.canonicalHash();
+                for (int symmetry = 0; symmetry < Board.NB_SYMMETRIES; symmetry++) {
+                    Board image = board.transformed(symmetry);
+                    assertEquals(canonical, image.canonicalHash(), "Symétrie " + symmetry);
+                    assertEquals(Board.hashOf(image.getBitboard(Disc.BLACK), image.getBitboard(Disc.WHITE)),
+                            image.hash());
+                    assertEquals(Long.bitCount(board.getBitboard(Disc.BLACK)),
+                            Long.bitCount(image.getBitboard(Disc.BLACK)));
+                }
+            });
+        }
+    }
+
+    @Test
+    void transformMovesEachSquareToItsImage() {
+        for (int symmetry = 0; symmetry < Board.NB_SYMMETRIES; symmetry++) {
+            for (int square = 0; square < 64; square++) {
+                int row = square / 8;
+                int col = square % 8;
+                // Transposition d'abord, puis miroirs gauche/droite et haut/bas
+                if ((symmetry & 4) != 0) {
+                    int tmp = row;
+                    row = col;
+                    col = tmp;
+                }
+                if ((symmetry & 1) != 0) {
+                    col = 7 - col;
+                }
+                if ((symmetry & 2) != 0) {
+                    row = 7 - row;
+                }
+                assertEquals(1L << (row * 8 + col), Board.transform(1L << square, symmetry),
+                        "Symétrie " + symmetry + ", case " + square);
+            }
+        }
+    }
+}
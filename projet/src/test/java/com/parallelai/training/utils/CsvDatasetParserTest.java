@@ -0,0 +1,118 @@
+package com.parallelai.training.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Découpage du CSV en morceaux : le résultat ne dépend pas du nombre de
+ * threads, quelles que soient les fins de ligne aux bornes des morceaux.
+ */
+class CsvDatasetParserTest {
+    private static final int NB_ROWS = 3_000;
+
+    @TempDir
+    Path directory;
+
+    private long[] blacks;
+    private long[] whites;
+    private float[] labels;
+
+    /**
+     * Écrit un dataset aléatoire avec en-tête, fins de ligne \n et \r\n,
+     * lignes vides et dernière ligne sans fin de ligne.
+     */
+    private String writeCsv(long seed) throws IOException {
+        Random random = new Random(seed);
+        blacks = new long[NB_ROWS];
+        whites = new long[NB_ROWS];
+        labels = new float[NB_ROWS];
+
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            csv.append("c").append(i).append(',');
+        }
+        csv.append("label\n");
+
+        for (int row = 0; row < NB_ROWS; row++) {
+            long black = 0;
+            long white = 0;
+            for (int i = 0; i < 64; i++) {
+                int cell = random.nextInt(3);
+                if (cell == 1) {
+                    black |= 1L << i;
+                    csv.append("1.0,");
+                } else if (cell == 2) {
+                    white |= 1L << i;
+                    csv.append("-1.0,");
+                } else {
+                    csv.append("0.0,");
+                }
+            }
+            // Multiples de 1/8, exacts en float
+            float label = random.nextInt(9) / 8f;
+            csv.append(label);
+            blacks[row] = black;
+            whites[row] = white;
+            labels[row] = label;
+
+            if (row < NB_ROWS - 1) {
+                csv.append(random.nextBoolean() ? "\n" : "\r\n");
+                if (random.nextInt(20) == 0) {
+                    csv.append(random.nextBoolean() ? "\n" : "\r\n");
+                }
+            }
+        }
+
+        Path path = directory.resolve("dataset.csv");
+        Files.writeString(path, csv.toString());
+        return path.toString();
+    }
+
+    private void assertRows(BoardDataset dataset) {
+        assertEquals(NB_ROWS, dataset.size());
+        for (int row = 0; row < NB_ROWS; row++) {
+            assertEquals(blacks[row], dataset.getBlack(row), "Ligne " + row);
+            assertEquals(whites[row], dataset.getWhite(row), "Ligne " + row);
+            assertEquals(labels[row], dataset.getLabel(row), 0.0f, "Ligne " + row);
+        }
+    }
+
+    @Test
+    void singleThreadedParseReadsEveryRow() throws IOException {
+        String path = writeCsv(1);
+        assertRows(CsvDatasetParser.parse(path, 1));
+    }
+
+    @Test
+    void threadCountDoesNotChangeResult() throws IOException {
+        for (long seed = 2; seed < 6; seed++) {
+            String path = writeCsv(seed);
+            BoardDataset reference = CsvDatasetParser.parse(path, 1);
+            for (int nbThreads : new int[] { 2, 3, 8 }) {
+                BoardDataset dataset = CsvDatasetParser.parse(path, nbThreads);
+                assertEquals(reference.size(), dataset.size());
+                for (int row = 0; row < reference.size(); row++) {
+                    assertEquals(reference.getBlack(row), dataset.getBlack(row));
+                    assertEquals(reference.getWhite(row), dataset.getWhite(row));
+                    assertEquals(reference.getLabel(row), dataset.getLabel(row), 0.0f);
+                }
+                assertRows(dataset);
+            }
+        }
+    }
+
+    @Test
+    void incompleteLineIsRejected() throws IOException {
+        Path path = directory.resolve("short.csv");
+        Files.writeString(path, "1.0,0.0,-1.0,0.5\n");
+        assertThrows(IOException.class, () -> CsvDatasetParser.parse(path.toString(), 1));
+    }
+}